@@ -7,29 +7,76 @@ import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayV2HTTPEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayV2HTTPResponse;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quixteam.usersapi.services.BulkTransferService;
+import com.quixteam.usersapi.services.MigrationService;
 import com.quixteam.usersapi.services.RoleService;
 import com.quixteam.usersapi.services.UserService;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /**
  * Handler for requests to Lambda function.
  */
 public class App implements RequestHandler<APIGatewayV2HTTPEvent, APIGatewayV2HTTPResponse> {
+    /**
+     * Handles the requests of one route key.
+     */
+    @FunctionalInterface
+    public interface Route {
+        APIGatewayV2HTTPResponse handle(APIGatewayV2HTTPEvent event) throws Exception;
+    }
 
-    public APIGatewayV2HTTPResponse handleRequest(APIGatewayV2HTTPEvent event, Context context) {
-        LambdaLogger logger = context.getLogger();
+    private final Map<String, Route> routes = new LinkedHashMap<>();
+
+    /**
+     * Clients and services are built once per container and shared by every invocation.
+     */
+    public App() {
         var objectMapper = new ObjectMapper();
-        var dynamoDBMapper = dynamoDBMapper();
-        UserService userService = new UserService(objectMapper, dynamoDBMapper, cognitoClient());
-        RoleService roleService = new RoleService(objectMapper, dynamoDBMapper);
+        var amazonDynamoDB = amazonDynamoDB();
+        var dynamoDBMapper = dynamoDBMapper(amazonDynamoDB);
+        var userService = new UserService(objectMapper, dynamoDBMapper, amazonDynamoDB, cognitoClient());
+        var roleService = new RoleService(objectMapper, dynamoDBMapper, amazonDynamoDB);
+        var bulkTransferService = new BulkTransferService(objectMapper, dynamoDBMapper, amazonDynamoDB, amazonS3());
+        var migrationService = new MigrationService(objectMapper, dynamoDBMapper, amazonDynamoDB);
+
+        routes.put("POST /users", userService::createNewUser);
+        routes.put("POST /users/{username}/roles", userService::assignRole);
+        routes.put("DELETE /users/{username}", userService::suspendUser);
+        routes.put("POST /users/bulk/suspend", userService::bulkSuspend);
+        routes.put("POST /users/bulk/revoke/{roleName}", userService::bulkRevokeRole);
+        routes.put("GET /users", userService::getAllUsers);
+        routes.put("POST /roles", roleService::createRole);
+        routes.put("PUT /roles/{roleName}", roleService::updateRole);
+        routes.put("GET /roles", roleService::getAllRoles);
+        routes.put("GET /roles/{roleName}/permissions", roleService::getEffectivePermissions);
+        routes.put("POST /modules/{roleName}", roleService::createModule);
+        routes.put("DELETE /modules/{roleName}", roleService::deleteModule);
+        routes.put("POST /permissions/{roleName}/{moduleName}", roleService::createPermission);
+        routes.put("DELETE /permissions/{roleName}/{moduleName}", roleService::deletePermissions);
+        routes.put("POST /bulk/export", bulkTransferService::exportModel);
+        routes.put("POST /bulk/import", bulkTransferService::importModel);
+        routes.put("POST /migrations/backfill", migrationService::backfill);
+    }
+
+    public Set<String> routeKeys() {
+        return Collections.unmodifiableSet(routes.keySet());
+    }
+
+    public APIGatewayV2HTTPResponse handleRequest(APIGatewayV2HTTPEvent event, Context context) {
+        return handleEvent(event, context.getLogger());
+    }
+
+    public APIGatewayV2HTTPResponse handleEvent(APIGatewayV2HTTPEvent event, LambdaLogger logger) {
         logger.log("Got event" + event.toString());
         Map<String, String> headers = new HashMap<>();
         headers.put("Content-Type", "application/json");
@@ -37,46 +84,19 @@ public class App implements RequestHandler<APIGatewayV2HTTPEvent, APIGatewayV2HT
         APIGatewayV2HTTPResponse response;
         var routeKey = event.getRouteKey();
         try {
-            switch (routeKey) {
-                case "POST /users":
-                    response = userService.createNewUser(event);
-                    break;
-                case "POST /users/{username}/roles":
-                    response = userService.assignRole(event);
-                    break;
-                case "DELETE /users/{username}":
-                    response = userService.suspendUser(event);
-                    break;
-                case "GET /users":
-                    response = userService.getAllUsers();
-                    break;
-                case "POST /roles":
-                    response = roleService.createRole(event);
-                    break;
-                case "PUT /roles/{roleName}":
-                    response = roleService.updateRole(event);
-                    break;
-                case "GET /roles":
-                    response = roleService.getAllRoles();
-                    break;
-                case "POST /modules/{roleName}":
-                    response = roleService.createModule(event);
-                    break;
-                case "DELETE /modules/{roleName}":
-                    response = roleService.deleteModule(event);
-                    break;
-                case "POST /permissions/{roleName}/{moduleName}":
-                    response = roleService.createPermission(event);
-                    break;
-                case "DELETE /permissions/{roleName}/{moduleName}":
-                    response = roleService.deletePermissions(event);
-                    break;
-                default:
-                    response = new APIGatewayV2HTTPResponse();
-                    response.setBody("No implementation found for " + event.getRouteKey());
-                    response.setStatusCode(404);
-                    break;
+            var route = routes.get(routeKey);
+            if (null == route) {
+                response = new APIGatewayV2HTTPResponse();
+                response.setBody("No implementation found for " + event.getRouteKey());
+                response.setStatusCode(404);
+            } else {
+                response = route.handle(event);
             }
+        } catch (ConditionalCheckFailedException e) {
+            // A version checked save lost to a concurrent change, the client can read again and retry.
+            response = new APIGatewayV2HTTPResponse();
+            response.setBody(String.format("{ \"message\": \"%s\" }", "Concurrent update, retry the request"));
+            response.setStatusCode(409);
         } catch (Exception e) {
             e.printStackTrace();
             var output = String.format("{ \"message\": \"%s\" }", e.getMessage());
@@ -95,9 +115,17 @@ public class App implements RequestHandler<APIGatewayV2HTTPEvent, APIGatewayV2HT
     }
 
     public DynamoDBMapper dynamoDBMapper() {
-        return new DynamoDBMapper(amazonDynamoDB(), DynamoDBMapperConfig.DEFAULT);
+        return dynamoDBMapper(amazonDynamoDB());
     }
 
+    private DynamoDBMapper dynamoDBMapper(AmazonDynamoDB amazonDynamoDB) {
+        return new DynamoDBMapper(amazonDynamoDB, DynamoDBMapperConfig.DEFAULT);
+    }
+
+
+    public AmazonS3 amazonS3() {
+        return AmazonS3ClientBuilder.standard().withRegion(Regions.US_EAST_2).build();
+    }
 
     private AmazonDynamoDB amazonDynamoDB() {
         return AmazonDynamoDBClientBuilder.standard().withRegion(Regions.US_EAST_2)
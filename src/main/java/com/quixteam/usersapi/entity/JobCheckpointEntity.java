@@ -0,0 +1,157 @@
+package com.quixteam.usersapi.entity;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBVersionAttribute;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Progress of a long running job that works through its input a time budget at a time. Saves are version checked
+ * and a call holds a lease while it works, so a retry sent while an earlier call still runs is turned away.
+ */
+@DynamoDBTable(tableName = "JobCheckpoints")
+public class JobCheckpointEntity {
+    @DynamoDBHashKey
+    private String id;
+    @DynamoDBVersionAttribute
+    private Long version;
+    @DynamoDBAttribute
+    private Long leaseUntil;
+    @DynamoDBAttribute
+    private String etag;
+    @DynamoDBAttribute
+    private String status;
+    @DynamoDBAttribute
+    private String phase;
+    @DynamoDBAttribute
+    private String cursor;
+    @DynamoDBAttribute
+    private Long linesProcessed;
+    @DynamoDBAttribute
+    private Long resumeOffset;
+    @DynamoDBAttribute
+    private Long resumeLine;
+    @DynamoDBAttribute
+    private String scratchKey;
+    @DynamoDBAttribute
+    private String uploadId;
+    @DynamoDBAttribute
+    private List<String> partETags;
+    @DynamoDBAttribute
+    private Map<String, Long> counts;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(Long leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public Long getLinesProcessed() {
+        return linesProcessed;
+    }
+
+    public void setLinesProcessed(Long linesProcessed) {
+        this.linesProcessed = linesProcessed;
+    }
+
+    public Long getResumeOffset() {
+        return resumeOffset;
+    }
+
+    public void setResumeOffset(Long resumeOffset) {
+        this.resumeOffset = resumeOffset;
+    }
+
+    public Long getResumeLine() {
+        return resumeLine;
+    }
+
+    public void setResumeLine(Long resumeLine) {
+        this.resumeLine = resumeLine;
+    }
+
+    public String getScratchKey() {
+        return scratchKey;
+    }
+
+    public void setScratchKey(String scratchKey) {
+        this.scratchKey = scratchKey;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public List<String> getPartETags() {
+        return partETags;
+    }
+
+    public void setPartETags(List<String> partETags) {
+        this.partETags = partETags;
+    }
+
+    public Map<String, Long> getCounts() {
+        return counts;
+    }
+
+    public void setCounts(Map<String, Long> counts) {
+        this.counts = counts;
+    }
+}
@@ -2,19 +2,44 @@ package com.quixteam.usersapi.entity;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexRangeKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBVersionAttribute;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import java.util.List;
 import java.util.Set;
 
 @DynamoDBTable(tableName = "Roles")
 public class RoleEntity {
+    public static final String CHANGE_FEED_INDEX = "changeFeed-changeSeq-index";
     @DynamoDBHashKey
     private String name;
     @DynamoDBAttribute
     private List<Module> modules;
     @DynamoDBAttribute
     private List<String> childRoles;
+    @JsonIgnore
+    @DynamoDBAttribute
+    private List<Module> effectivePermissions;
+    @JsonIgnore
+    @DynamoDBVersionAttribute
+    private Long generation;
+    @JsonIgnore
+    @DynamoDBAttribute
+    private List<Tombstone> tombstones;
+    @JsonIgnore
+    @DynamoDBIndexHashKey(globalSecondaryIndexName = CHANGE_FEED_INDEX)
+    private String changeFeed;
+    @DynamoDBIndexRangeKey(globalSecondaryIndexName = CHANGE_FEED_INDEX)
+    private Long changeSeq;
+    @JsonIgnore
+    @DynamoDBAttribute
+    private Long changedAt;
+    @JsonIgnore
+    @DynamoDBAttribute
+    private Long tombstonesPrunedThrough;
 
     public String getName() {
         return name;
@@ -39,4 +64,60 @@ public class RoleEntity {
     public void setChildRoles(List<String> childRoles) {
         this.childRoles = childRoles;
     }
-}
\ No newline at end of file
+
+    public List<Module> getEffectivePermissions() {
+        return effectivePermissions;
+    }
+
+    public void setEffectivePermissions(List<Module> effectivePermissions) {
+        this.effectivePermissions = effectivePermissions;
+    }
+
+    public Long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(Long generation) {
+        this.generation = generation;
+    }
+
+    public List<Tombstone> getTombstones() {
+        return tombstones;
+    }
+
+    public void setTombstones(List<Tombstone> tombstones) {
+        this.tombstones = tombstones;
+    }
+
+    public String getChangeFeed() {
+        return changeFeed;
+    }
+
+    public void setChangeFeed(String changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    public Long getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(Long changedAt) {
+        this.changedAt = changedAt;
+    }
+
+    public Long getTombstonesPrunedThrough() {
+        return tombstonesPrunedThrough;
+    }
+
+    public void setTombstonesPrunedThrough(Long tombstonesPrunedThrough) {
+        this.tombstonesPrunedThrough = tombstonesPrunedThrough;
+    }
+}
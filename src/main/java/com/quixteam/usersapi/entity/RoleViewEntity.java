@@ -0,0 +1,76 @@
+package com.quixteam.usersapi.entity;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBVersionAttribute;
+
+import java.util.List;
+
+/**
+ * Narrow mapping of a Roles item, used to write the materialized effective permissions of a role without touching
+ * its modules, child roles or tombstones.
+ */
+@DynamoDBTable(tableName = "Roles")
+public class RoleViewEntity {
+    @DynamoDBHashKey
+    private String name;
+    @DynamoDBAttribute
+    private List<Module> effectivePermissions;
+    @DynamoDBVersionAttribute
+    private Long generation;
+    @DynamoDBAttribute
+    private String changeFeed;
+    @DynamoDBAttribute
+    private Long changeSeq;
+    @DynamoDBAttribute
+    private Long changedAt;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<Module> getEffectivePermissions() {
+        return effectivePermissions;
+    }
+
+    public void setEffectivePermissions(List<Module> effectivePermissions) {
+        this.effectivePermissions = effectivePermissions;
+    }
+
+    public Long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(Long generation) {
+        this.generation = generation;
+    }
+
+    public String getChangeFeed() {
+        return changeFeed;
+    }
+
+    public void setChangeFeed(String changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    public Long getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(Long changedAt) {
+        this.changedAt = changedAt;
+    }
+}
@@ -0,0 +1,56 @@
+package com.quixteam.usersapi.entity;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBDocument;
+
+/**
+ * Marks a module, or a single permission of a module when {@code permission} is set, removed from a role.
+ */
+@DynamoDBDocument
+public class Tombstone {
+
+    @DynamoDBAttribute
+    private String module;
+    @DynamoDBAttribute
+    private String permission;
+    @DynamoDBAttribute
+    private Long changeSeq;
+    @DynamoDBAttribute
+    private Long deletedAt;
+
+
+    public Tombstone() {
+    }
+
+    public String getModule() {
+        return module;
+    }
+
+    public void setModule(String module) {
+        this.module = module;
+    }
+
+    public String getPermission() {
+        return permission;
+    }
+
+    public void setPermission(String permission) {
+        this.permission = permission;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    public Long getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(Long deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+}
@@ -2,18 +2,30 @@ package com.quixteam.usersapi.entity;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexRangeKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import java.util.List;
 import java.util.Set;
 
 @DynamoDBTable(tableName = "Users")
 public class UserEntity {
+    public static final String CHANGE_FEED_INDEX = "changeFeed-changeSeq-index";
     @DynamoDBHashKey
     private String username;
     @DynamoDBAttribute
     private List<String> roles;
     private String status;
+    @JsonIgnore
+    @DynamoDBIndexHashKey(globalSecondaryIndexName = CHANGE_FEED_INDEX)
+    private String changeFeed;
+    @DynamoDBIndexRangeKey(globalSecondaryIndexName = CHANGE_FEED_INDEX)
+    private Long changeSeq;
+    @JsonIgnore
+    @DynamoDBAttribute
+    private Long changedAt;
 
     public String getUsername() {
         return username;
@@ -38,4 +50,28 @@ public class UserEntity {
     public void setStatus(String status) {
         this.status = status;
     }
-}
\ No newline at end of file
+
+    public String getChangeFeed() {
+        return changeFeed;
+    }
+
+    public void setChangeFeed(String changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    public Long getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(Long changedAt) {
+        this.changedAt = changedAt;
+    }
+}
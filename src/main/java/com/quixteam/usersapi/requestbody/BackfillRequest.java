@@ -0,0 +1,31 @@
+package com.quixteam.usersapi.requestbody;
+
+public class BackfillRequest {
+    private String phase;
+    private String cursor;
+    private Integer maxSeconds;
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public Integer getMaxSeconds() {
+        return maxSeconds;
+    }
+
+    public void setMaxSeconds(Integer maxSeconds) {
+        this.maxSeconds = maxSeconds;
+    }
+}
@@ -0,0 +1,30 @@
+package com.quixteam.usersapi.requestbody;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.quixteam.usersapi.entity.RoleEntity;
+import com.quixteam.usersapi.entity.UserEntity;
+
+/**
+ * One line of a bulk NDJSON file, holding either a role or a user.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkRecord {
+    private RoleEntity role;
+    private UserEntity user;
+
+    public RoleEntity getRole() {
+        return role;
+    }
+
+    public void setRole(RoleEntity role) {
+        this.role = role;
+    }
+
+    public UserEntity getUser() {
+        return user;
+    }
+
+    public void setUser(UserEntity user) {
+        this.user = user;
+    }
+}
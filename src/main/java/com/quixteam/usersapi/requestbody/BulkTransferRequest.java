@@ -0,0 +1,40 @@
+package com.quixteam.usersapi.requestbody;
+
+public class BulkTransferRequest {
+    private String bucket;
+    private String key;
+    private Integer writesPerSecond;
+    private Integer maxSeconds;
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(String bucket) {
+        this.bucket = bucket;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public Integer getWritesPerSecond() {
+        return writesPerSecond;
+    }
+
+    public void setWritesPerSecond(Integer writesPerSecond) {
+        this.writesPerSecond = writesPerSecond;
+    }
+
+    public Integer getMaxSeconds() {
+        return maxSeconds;
+    }
+
+    public void setMaxSeconds(Integer maxSeconds) {
+        this.maxSeconds = maxSeconds;
+    }
+}
@@ -0,0 +1,60 @@
+package com.quixteam.usersapi.requestbody;
+
+import java.util.List;
+
+public class BulkUserRequest {
+    private List<String> usernames;
+    private String role;
+    private Integer concurrency;
+    private Integer requestsPerSecond;
+    private String cursor;
+    private Integer maxSeconds;
+
+    public List<String> getUsernames() {
+        return usernames;
+    }
+
+    public void setUsernames(List<String> usernames) {
+        this.usernames = usernames;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public void setRole(String role) {
+        this.role = role;
+    }
+
+    public Integer getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(Integer concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public Integer getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public void setRequestsPerSecond(Integer requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public Integer getMaxSeconds() {
+        return maxSeconds;
+    }
+
+    public void setMaxSeconds(Integer maxSeconds) {
+        this.maxSeconds = maxSeconds;
+    }
+}
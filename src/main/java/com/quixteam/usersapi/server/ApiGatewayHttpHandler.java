@@ -0,0 +1,186 @@
+package com.quixteam.usersapi.server;
+
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayV2HTTPEvent;
+import com.quixteam.usersapi.App;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+/**
+ * Adapts exchanges from the embedded server to the API Gateway events {@link App} already handles. Admission runs
+ * on the dispatcher thread: once the in-flight limit is reached, or the worker executor rejects the hand-off,
+ * requests are answered with 503 instead of queueing.
+ */
+public class ApiGatewayHttpHandler implements HttpHandler {
+    private final App app;
+    private final Executor workers;
+    private final Semaphore inFlight;
+    private final LambdaLogger logger;
+    private final List<RouteTemplate> routes;
+
+    public ApiGatewayHttpHandler(App app, Executor workers, int maxInFlight, LambdaLogger logger) {
+        this.app = app;
+        this.workers = workers;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.logger = logger;
+        this.routes = app.routeKeys().stream().map(RouteTemplate::new).collect(Collectors.toList());
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!inFlight.tryAcquire()) {
+            reject(exchange);
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    serve(exchange);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            reject(exchange);
+        }
+    }
+
+    private void serve(HttpExchange exchange) {
+        try {
+            var response = app.handleEvent(toEvent(exchange), logger);
+            var body = null == response.getBody() ? new byte[0] : response.getBody().getBytes(StandardCharsets.UTF_8);
+            if (null != response.getHeaders()) {
+                response.getHeaders().forEach((name, value) -> exchange.getResponseHeaders().set(name, value));
+            }
+            exchange.sendResponseHeaders(response.getStatusCode(), body.length == 0 ? -1 : body.length);
+            if (body.length > 0) {
+                exchange.getResponseBody().write(body);
+            }
+        } catch (Exception e) {
+            logger.log("Failed to serve " + exchange.getRequestURI() + ": " + e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Runs on the dispatcher thread, so only headers are sent: a body write to a slow client would stall accepts.
+     */
+    private void reject(HttpExchange exchange) throws IOException {
+        try {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            exchange.sendResponseHeaders(503, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private APIGatewayV2HTTPEvent toEvent(HttpExchange exchange) throws IOException {
+        var method = exchange.getRequestMethod();
+        var uri = exchange.getRequestURI();
+        var path = uri.getPath();
+
+        var event = new APIGatewayV2HTTPEvent();
+        event.setVersion("2.0");
+        event.setRawPath(uri.getRawPath());
+        event.setRawQueryString(null == uri.getRawQuery() ? "" : uri.getRawQuery());
+        event.setQueryStringParameters(parseQuery(uri.getRawQuery()));
+
+        Map<String, String> headers = new HashMap<>();
+        exchange.getRequestHeaders().forEach((name, values) ->
+                headers.put(name.toLowerCase(Locale.ROOT), String.join(",", values)));
+        event.setHeaders(headers);
+
+        var body = exchange.getRequestBody().readAllBytes();
+        event.setBody(body.length == 0 ? null : new String(body, StandardCharsets.UTF_8));
+        event.setIsBase64Encoded(false);
+
+        var segments = splitPath(path);
+        var routeKey = method + " " + path;
+        for (RouteTemplate route : routes) {
+            var pathParameters = route.match(method, segments);
+            if (null != pathParameters) {
+                routeKey = route.routeKey;
+                event.setPathParameters(pathParameters);
+                break;
+            }
+        }
+        event.setRouteKey(routeKey);
+
+        var http = new APIGatewayV2HTTPEvent.RequestContext.Http();
+        http.setMethod(method);
+        http.setPath(path);
+        http.setProtocol(exchange.getProtocol());
+        http.setSourceIp(exchange.getRemoteAddress().getAddress().getHostAddress());
+        http.setUserAgent(headers.get("user-agent"));
+        var requestContext = new APIGatewayV2HTTPEvent.RequestContext();
+        requestContext.setRouteKey(routeKey);
+        requestContext.setRequestId(UUID.randomUUID().toString());
+        requestContext.setTimeEpoch(System.currentTimeMillis());
+        requestContext.setHttp(http);
+        event.setRequestContext(requestContext);
+        return event;
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) {
+        if (null == rawQuery || rawQuery.isEmpty()) {
+            return null;
+        }
+        Map<String, String> parameters = new LinkedHashMap<>();
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            var separator = pair.indexOf('=');
+            var name = URLDecoder.decode(separator < 0 ? pair : pair.substring(0, separator), StandardCharsets.UTF_8);
+            var value = separator < 0 ? "" : URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+            // API Gateway joins repeated parameters with a comma.
+            parameters.merge(name, value, (existing, added) -> existing + "," + added);
+        }
+        return parameters;
+    }
+
+    static String[] splitPath(String path) {
+        var trimmed = path.replaceAll("^/+|/+$", "");
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("/");
+    }
+
+    static final class RouteTemplate {
+        private final String routeKey;
+        private final String method;
+        private final String[] segments;
+
+        RouteTemplate(String routeKey) {
+            this.routeKey = routeKey;
+            var parts = routeKey.split(" ", 2);
+            this.method = parts[0];
+            this.segments = splitPath(parts[1]);
+        }
+
+        Map<String, String> match(String requestMethod, String[] requestSegments) {
+            if (!method.equalsIgnoreCase(requestMethod) || segments.length != requestSegments.length) {
+                return null;
+            }
+            Map<String, String> pathParameters = new HashMap<>();
+            for (int i = 0; i < segments.length; i++) {
+                var segment = segments[i];
+                if (segment.startsWith("{") && segment.endsWith("}")) {
+                    pathParameters.put(segment.substring(1, segment.length() - 1), requestSegments[i]);
+                } else if (!segment.equals(requestSegments[i])) {
+                    return null;
+                }
+            }
+            return pathParameters;
+        }
+    }
+}
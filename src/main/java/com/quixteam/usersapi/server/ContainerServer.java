@@ -0,0 +1,110 @@
+package com.quixteam.usersapi.server;
+
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.quixteam.usersapi.App;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long running alternative to the Lambda entry point: serves the routes of {@link App} from the JDK's embedded
+ * NIO HTTP server so one JVM handles many concurrent requests with a single set of clients and caches.
+ * <p>
+ * Configured through environment variables:
+ * <ul>
+ *     <li>{@code SERVER_PORT} - listen port, default 8080</li>
+ *     <li>{@code SERVER_EXECUTOR} - {@code fixed} (default) or {@code virtual}, which needs JDK 21+</li>
+ *     <li>{@code SERVER_WORKER_THREADS} - size of the fixed pool, default 64</li>
+ *     <li>{@code SERVER_MAX_IN_FLIGHT} - requests admitted at once before answering 503; defaults to the pool size
+ *     for the fixed executor, which never queues, and to 1000 for virtual threads</li>
+ *     <li>{@code SERVER_KEEP_ALIVE_SECONDS} - idle time before a keep-alive connection is closed, default 30</li>
+ *     <li>{@code SERVER_SHUTDOWN_GRACE_SECONDS} - time given to in-flight requests on shutdown, default 30</li>
+ * </ul>
+ */
+public class ContainerServer {
+
+    public static void main(String[] args) throws IOException {
+        var port = intSetting("SERVER_PORT", 8080);
+        var executorType = System.getenv().getOrDefault("SERVER_EXECUTOR", "fixed");
+        var workerThreads = intSetting("SERVER_WORKER_THREADS", 64);
+        var keepAliveSeconds = intSetting("SERVER_KEEP_ALIVE_SECONDS", 30);
+        var shutdownGraceSeconds = intSetting("SERVER_SHUTDOWN_GRACE_SECONDS", 30);
+
+        // Read once by the JDK server when it is first created.
+        System.setProperty("sun.net.httpserver.idleInterval", String.valueOf(keepAliveSeconds));
+
+        var logger = stdoutLogger();
+        var workers = workerExecutor(executorType, workerThreads, logger);
+        var pooled = workers instanceof ThreadPoolExecutor;
+        var maxInFlight = intSetting("SERVER_MAX_IN_FLIGHT", pooled ? workerThreads : 1000);
+        if (pooled && maxInFlight > workerThreads) {
+            logger.log("SERVER_MAX_IN_FLIGHT capped to the " + workerThreads + " worker threads");
+            maxInFlight = workerThreads;
+        }
+        var server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", new ApiGatewayHttpHandler(new App(), workers, maxInFlight, logger));
+        // Handlers only admit and hand off work, so they run on the dispatcher thread.
+        server.setExecutor(Runnable::run);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            logger.log("Shutting down, waiting up to " + shutdownGraceSeconds + "s for in-flight requests");
+            server.stop(shutdownGraceSeconds);
+            workers.shutdown();
+            try {
+                workers.awaitTermination(shutdownGraceSeconds, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        server.start();
+        logger.log("Listening on port " + port + " with " + executorType + " executor");
+    }
+
+    static ExecutorService workerExecutor(String executorType, int workerThreads, LambdaLogger logger) {
+        if ("virtual".equalsIgnoreCase(executorType)) {
+            try {
+                // Looked up reflectively so the build can keep targeting Java 11.
+                var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                logger.log("Virtual threads need JDK 21+, falling back to a fixed pool of " + workerThreads);
+            }
+        }
+        var threadNumber = new AtomicInteger();
+        // No queue: once every worker is busy, execute() rejects and the handler answers 503.
+        return new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            var thread = new Thread(runnable, "api-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static int intSetting(String name, int defaultValue) {
+        var value = System.getenv(name);
+        return null == value || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static LambdaLogger stdoutLogger() {
+        return new LambdaLogger() {
+            @Override
+            public void log(String message) {
+                System.out.println(message);
+            }
+
+            @Override
+            public void log(byte[] message) {
+                System.out.println(new String(message, StandardCharsets.UTF_8));
+            }
+        };
+    }
+}
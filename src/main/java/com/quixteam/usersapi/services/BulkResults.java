@@ -0,0 +1,124 @@
+package com.quixteam.usersapi.services;
+
+import com.quixteam.usersapi.entity.UserEntity;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Per user outcome of a bulk user operation: NOT_FOUND, UNCHANGED, UPDATED or FAILED with a message.
+ */
+public class BulkResults {
+    private final List<Map<String, String>> results = new ArrayList<>();
+
+    public void add(String username, String status, String message) {
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put("username", username);
+        result.put("status", status);
+        if (null != message) {
+            result.put("message", message);
+        }
+        results.add(result);
+    }
+
+    /**
+     * Runs the action over the users on the workers, handing out the next user only until the deadline, so the
+     * users attempted are always the first ones of the list. Waits for the actions already started.
+     *
+     * @return the outcome of each user attempted, in list order
+     */
+    public static List<Future<Boolean>> runUntil(List<UserEntity> userEntities, Predicate<UserEntity> action,
+                                                 ExecutorService workers, int concurrency, LongSupplier clock,
+                                                 long deadline) {
+        List<CompletableFuture<Boolean>> outcomes = userEntities.stream()
+                .map(userEntity -> new CompletableFuture<Boolean>())
+                .collect(Collectors.toList());
+        var next = new AtomicInteger();
+        List<Future<?>> runners = new ArrayList<>();
+        for (int i = 0; i < Math.min(concurrency, userEntities.size()); i++) {
+            runners.add(workers.submit(() -> {
+                int index;
+                while (clock.getAsLong() < deadline && (index = next.getAndIncrement()) < userEntities.size()) {
+                    try {
+                        outcomes.get(index).complete(action.test(userEntities.get(index)));
+                    } catch (RuntimeException e) {
+                        outcomes.get(index).completeExceptionally(e);
+                    }
+                }
+            }));
+        }
+        for (Future<?> runner : runners) {
+            try {
+                runner.get();
+            } catch (ExecutionException e) {
+                // Only an Error escapes the action, the user it was on is settled below.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        var attempted = outcomes.subList(0, Math.min(next.get(), userEntities.size()));
+        // No effect on outcomes already settled; keeps the caller from waiting on one that never will be.
+        attempted.forEach(outcome -> outcome.completeExceptionally(new IllegalStateException("Interrupted")));
+        return new ArrayList<>(attempted);
+    }
+
+    /**
+     * Waits for the action on every user, recording those it left alone or failed on.
+     *
+     * @return the users the action changed, still to be saved
+     */
+    public List<UserEntity> collect(List<UserEntity> userEntities, List<Future<Boolean>> outcomes) {
+        List<UserEntity> changedUsers = new ArrayList<>();
+        for (int i = 0; i < userEntities.size(); i++) {
+            var username = userEntities.get(i).getUsername();
+            try {
+                if (outcomes.get(i).get()) {
+                    changedUsers.add(userEntities.get(i));
+                } else {
+                    add(username, "UNCHANGED", null);
+                }
+            } catch (ExecutionException e) {
+                add(username, "FAILED", e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                add(username, "FAILED", "Interrupted");
+            }
+        }
+        return changedUsers;
+    }
+
+    /**
+     * @param unsaved failure message by username for changed users whose update was not saved
+     */
+    public void saved(List<UserEntity> changedUsers, Map<String, String> unsaved) {
+        changedUsers.forEach(userEntity -> {
+            var failure = unsaved.get(userEntity.getUsername());
+            if (null == failure) {
+                add(userEntity.getUsername(), "UPDATED", null);
+            } else {
+                add(userEntity.getUsername(), "FAILED", "Not saved: " + failure);
+            }
+        });
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    public Map<String, Long> counts() {
+        return results.stream()
+                .collect(Collectors.groupingBy(result -> result.get("status"), TreeMap::new, Collectors.counting()));
+    }
+
+    public List<Map<String, String>> getResults() {
+        return results;
+    }
+}
@@ -0,0 +1,679 @@
+package com.quixteam.usersapi.services;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayV2HTTPEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayV2HTTPResponse;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quixteam.usersapi.entity.JobCheckpointEntity;
+import com.quixteam.usersapi.entity.RoleEntity;
+import com.quixteam.usersapi.entity.UserEntity;
+import com.quixteam.usersapi.requestbody.BulkRecord;
+import com.quixteam.usersapi.requestbody.BulkTransferRequest;
+import com.quixteam.usersapi.util.GzipLineReader;
+import com.quixteam.usersapi.util.LambdaUtil;
+import com.quixteam.usersapi.util.RateLimiter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports and imports the whole RBAC model as gzip NDJSON objects in S3, one {@link BulkRecord} per line, roles
+ * before users. Both run in time boxed steps: each call works until its budget runs out, checkpoints and answers
+ * 202, and the same request sent again carries on from the checkpoint until it answers 200.
+ * <p>
+ * Exports are written as one gzip member per scanned page, so an import of them restarts at the member it stopped
+ * in through a ranged read rather than decompressing the file from the start again.
+ * <p>
+ * A call leases the checkpoint for its time budget through a version checked save, so a retry sent while an earlier
+ * call still works, or a second call racing it, answers 409 instead of working on the same checkpoint.
+ */
+public class BulkTransferService {
+    enum ImportPhase { VALIDATE, WRITE, FINALIZE }
+
+    enum ExportPhase { ROLES, USERS }
+
+    private static final String IN_PROGRESS = "IN_PROGRESS";
+    private static final String COMPLETED = "COMPLETED";
+    private static final int BATCH_SIZE = 25;
+    private static final int FINALIZE_BATCH_SIZE = 100;
+    private static final int EXPORT_PAGE_SIZE = 500;
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final int DEFAULT_WRITES_PER_SECOND = 100;
+    private static final int MAX_WRITES_PER_SECOND = 1000;
+    // Leaves room under the API Gateway integration timeout to answer.
+    private static final int MAX_SECONDS = 25;
+    // Outlasts a call that overruns its budget finishing a batch, and a call that dies holds it no longer.
+    private static final long LEASE_MARGIN_MILLIS = 60_000;
+
+    private final ObjectMapper objectMapper;
+    private final DynamoDBMapper dynamoDBMapper;
+    private final AmazonS3 amazonS3;
+    private final ChangeSequence roleChangeSequence;
+    private final ChangeSequence userChangeSequence;
+    private final RoleParentIndex parentIndex;
+    private final RoleViews roleViews;
+
+    public BulkTransferService(ObjectMapper objectMapper, DynamoDBMapper dynamoDBMapper, AmazonDynamoDB amazonDynamoDB,
+                               AmazonS3 amazonS3) {
+        this.objectMapper = objectMapper;
+        this.dynamoDBMapper = dynamoDBMapper;
+        this.amazonS3 = amazonS3;
+        this.roleChangeSequence = new ChangeSequence(amazonDynamoDB, "Roles");
+        this.userChangeSequence = new ChangeSequence(amazonDynamoDB, "Users");
+        this.parentIndex = new RoleParentIndex(amazonDynamoDB);
+        this.roleViews = new RoleViews(dynamoDBMapper, amazonDynamoDB);
+    }
+
+    /**
+     * Scans roles then users page by page into a multipart upload. Parts must be at least 5 MB, so output short of
+     * a part is parked in a scratch object between calls. A multipart upload that is never finished is left to the
+     * bucket's lifecycle rules.
+     */
+    public APIGatewayV2HTTPResponse exportModel(APIGatewayV2HTTPEvent event) throws IOException {
+        var transferRequest = objectMapper.readValue(event.getBody(), BulkTransferRequest.class);
+        if (null == transferRequest.getBucket() || null == transferRequest.getKey()) {
+            return missingLocation();
+        }
+        var bucket = transferRequest.getBucket();
+        var key = transferRequest.getKey();
+        var deadline = deadline(transferRequest);
+
+        var checkpoint = dynamoDBMapper.load(JobCheckpointEntity.class, "export:" + bucket + "/" + key);
+        if (isLeased(checkpoint)) {
+            return alreadyRunning();
+        }
+        if (null == checkpoint || COMPLETED.equals(checkpoint.getStatus())) {
+            var previous = checkpoint;
+            checkpoint = new JobCheckpointEntity();
+            checkpoint.setId("export:" + bucket + "/" + key);
+            checkpoint.setVersion(null == previous ? null : previous.getVersion());
+            checkpoint.setStatus(IN_PROGRESS);
+            checkpoint.setPhase(ExportPhase.ROLES.name());
+            checkpoint.setCounts(new HashMap<>(Map.of("roles", 0L, "users", 0L)));
+            checkpoint.setPartETags(new ArrayList<>());
+            lease(checkpoint, deadline);
+            checkpoint.setUploadId(amazonS3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, key)).getUploadId());
+            dynamoDBMapper.save(checkpoint);
+        } else {
+            lease(checkpoint, deadline);
+        }
+        if (null == checkpoint.getPartETags()) {
+            checkpoint.setPartETags(new ArrayList<>());
+        }
+
+        var exportFile = Files.createTempFile("rbac-export", ".ndjson.gz");
+        try {
+            if (null != checkpoint.getScratchKey()) {
+                amazonS3.getObject(new GetObjectRequest(bucket, checkpoint.getScratchKey()), exportFile.toFile());
+            }
+            var phase = null == checkpoint.getPhase() ? null : ExportPhase.valueOf(checkpoint.getPhase());
+            while (null != phase) {
+                String cursor;
+                if (phase == ExportPhase.ROLES) {
+                    var page = dynamoDBMapper.scanPage(RoleEntity.class, scanFrom("name", checkpoint.getCursor()));
+                    appendMember(exportFile, page.getResults(), BulkRecord::setRole);
+                    checkpoint.getCounts().merge("roles", (long) page.getResults().size(), Long::sum);
+                    cursor = cursorOf(page, "name");
+                } else {
+                    var page = dynamoDBMapper.scanPage(UserEntity.class, scanFrom("username", checkpoint.getCursor()));
+                    appendMember(exportFile, page.getResults(), BulkRecord::setUser);
+                    checkpoint.getCounts().merge("users", (long) page.getResults().size(), Long::sum);
+                    cursor = cursorOf(page, "username");
+                }
+                checkpoint.setCursor(cursor);
+                if (null == cursor) {
+                    phase = phase == ExportPhase.ROLES ? ExportPhase.USERS : null;
+                    checkpoint.setPhase(null == phase ? null : phase.name());
+                }
+                if (Files.size(exportFile) >= MIN_PART_SIZE) {
+                    uploadPart(checkpoint, bucket, key, exportFile);
+                    replaceScratch(checkpoint, bucket, null);
+                }
+                if (null != phase && System.currentTimeMillis() > deadline) {
+                    var scratchKey = key + ".export-" + UUID.randomUUID();
+                    amazonS3.putObject(bucket, scratchKey, exportFile.toFile());
+                    replaceScratch(checkpoint, bucket, scratchKey);
+                    release(checkpoint);
+                    return progress(checkpoint, 202);
+                }
+            }
+
+            if (checkpoint.getPartETags().isEmpty() && 0 == Files.size(exportFile)) {
+                appendMember(exportFile, List.of(), BulkRecord::setRole);
+            }
+            if (Files.size(exportFile) > 0) {
+                uploadPart(checkpoint, bucket, key, exportFile);
+            }
+            List<PartETag> partETags = new ArrayList<>();
+            for (int i = 0; i < checkpoint.getPartETags().size(); i++) {
+                partETags.add(new PartETag(i + 1, checkpoint.getPartETags().get(i)));
+            }
+            amazonS3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, checkpoint.getUploadId(), partETags));
+            checkpoint.setStatus(COMPLETED);
+            checkpoint.setLeaseUntil(null);
+            replaceScratch(checkpoint, bucket, null);
+        } finally {
+            Files.deleteIfExists(exportFile);
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("roles", checkpoint.getCounts().get("roles"));
+        summary.put("users", checkpoint.getCounts().get("users"));
+        APIGatewayV2HTTPResponse response = new APIGatewayV2HTTPResponse();
+        response.setBody(objectMapper.writeValueAsString(summary));
+        response.setStatusCode(200);
+        return response;
+    }
+
+    /**
+     * Validates the whole file, then writes it in rate limited batches, then links and recomputes the hierarchy
+     * around the imported roles. The position in the file is checkpointed after every batch.
+     * <p>
+     * Batch writes replace whole items, so they drop the parent edges kept on imported roles and write them with no
+     * view. Their existing ancestors are marked stale before each batch and the edges are put back straight after;
+     * the final phase records the edges to their child roles and recomputes them and all their ancestors.
+     */
+    public APIGatewayV2HTTPResponse importModel(APIGatewayV2HTTPEvent event) throws IOException {
+        var transferRequest = objectMapper.readValue(event.getBody(), BulkTransferRequest.class);
+        if (null == transferRequest.getBucket() || null == transferRequest.getKey()) {
+            return missingLocation();
+        }
+        var bucket = transferRequest.getBucket();
+        var key = transferRequest.getKey();
+        var etag = amazonS3.getObjectMetadata(bucket, key).getETag();
+        var deadline = deadline(transferRequest);
+        var rateLimiter = new RateLimiter(LambdaUtil.clamp(transferRequest.getWritesPerSecond(),
+                DEFAULT_WRITES_PER_SECOND, MAX_WRITES_PER_SECOND));
+
+        var checkpoint = dynamoDBMapper.load(JobCheckpointEntity.class, "import:" + bucket + "/" + key);
+        if (isLeased(checkpoint)) {
+            return alreadyRunning();
+        }
+        if (null == checkpoint || !etag.equals(checkpoint.getEtag())) {
+            var previous = checkpoint;
+            checkpoint = new JobCheckpointEntity();
+            checkpoint.setId("import:" + bucket + "/" + key);
+            checkpoint.setVersion(null == previous ? null : previous.getVersion());
+            checkpoint.setEtag(etag);
+            checkpoint.setStatus(IN_PROGRESS);
+            checkpoint.setCounts(new HashMap<>(Map.of("roles", 0L, "users", 0L)));
+            lease(checkpoint, deadline);
+            startPhase(checkpoint, ImportPhase.VALIDATE);
+            if (null != previous && null != previous.getScratchKey()) {
+                amazonS3.deleteObject(bucket, previous.getScratchKey());
+            }
+        } else if (!COMPLETED.equals(checkpoint.getStatus())) {
+            lease(checkpoint, deadline);
+        }
+
+        while (!COMPLETED.equals(checkpoint.getStatus()) && System.currentTimeMillis() < deadline) {
+            var phase = ImportPhase.valueOf(checkpoint.getPhase());
+            if (phase == ImportPhase.VALIDATE) {
+                var errors = validate(checkpoint, bucket, key, deadline);
+                if (null == errors) {
+                    break;
+                }
+                if (!errors.isEmpty()) {
+                    if (null != checkpoint.getScratchKey()) {
+                        amazonS3.deleteObject(bucket, checkpoint.getScratchKey());
+                    }
+                    dynamoDBMapper.delete(checkpoint);
+                    Map<String, Object> failure = new LinkedHashMap<>();
+                    failure.put("message", "Import file has invalid records");
+                    failure.put("errors", errors);
+                    APIGatewayV2HTTPResponse response = new APIGatewayV2HTTPResponse();
+                    response.setBody(objectMapper.writeValueAsString(failure));
+                    response.setStatusCode(400);
+                    return response;
+                }
+                replaceScratch(checkpoint, bucket, null);
+                startPhase(checkpoint, ImportPhase.WRITE);
+            } else if (phase == ImportPhase.WRITE) {
+                if (write(checkpoint, bucket, key, rateLimiter, deadline)) {
+                    startPhase(checkpoint, ImportPhase.FINALIZE);
+                }
+            } else if (finalizeRoles(checkpoint, bucket, key, deadline)) {
+                checkpoint.setStatus(COMPLETED);
+            }
+        }
+        release(checkpoint);
+        return progress(checkpoint, COMPLETED.equals(checkpoint.getStatus()) ? 200 : 202);
+    }
+
+    /**
+     * Checks that every child role and user role reference names a role defined in the file or already stored.
+     * Role names defined so far and references not yet resolved are parked in a scratch object between calls;
+     * whatever is still unresolved at the end is looked up by key.
+     *
+     * @return the errors found, or null when the time budget ran out first
+     */
+    private List<String> validate(JobCheckpointEntity checkpoint, String bucket, String key, long deadline) throws IOException {
+        var state = null == checkpoint.getScratchKey() ? new ValidationState()
+                : objectMapper.readValue(amazonS3.getObjectAsString(bucket, checkpoint.getScratchKey()), ValidationState.class);
+        try (var reader = openLines(offset -> openObject(bucket, key, offset), checkpoint)) {
+            if (!validateLines(objectMapper, reader, checkpoint, state, System::currentTimeMillis, deadline)) {
+                var scratchKey = key + ".import-" + UUID.randomUUID();
+                amazonS3.putObject(bucket, scratchKey, objectMapper.writeValueAsString(state));
+                replaceScratch(checkpoint, bucket, scratchKey);
+                return null;
+            }
+        }
+        resolvePending(state, roleViews::loadRoles);
+        return state.getErrors();
+    }
+
+    /**
+     * Validates lines until the file or the time budget runs out, moving the checkpoint past the lines read.
+     *
+     * @return true once the whole file was read
+     */
+    static boolean validateLines(ObjectMapper objectMapper, GzipLineReader reader, JobCheckpointEntity checkpoint,
+                                 ValidationState state, LongSupplier clock, long deadline) throws IOException {
+        var lineNumber = checkpoint.getLinesProcessed();
+        String line;
+        while (null != (line = reader.readLine())) {
+            lineNumber++;
+            validateRecord(objectMapper, state, line, lineNumber);
+            if (clock.getAsLong() > deadline) {
+                moveTo(checkpoint, reader, lineNumber);
+                return false;
+            }
+        }
+        moveTo(checkpoint, reader, lineNumber);
+        return true;
+    }
+
+    /**
+     * Looks up the references still unresolved at the end of the file by key and reports those nothing defines.
+     */
+    static void resolvePending(ValidationState state, Function<Collection<String>, Map<String, RoleEntity>> roleLoader) {
+        if (state.getPendingReferences().isEmpty()) {
+            return;
+        }
+        var storedRoles = roleLoader.apply(state.getPendingReferences().keySet());
+        state.getPendingReferences().forEach((roleName, lineNumber) -> {
+            if (!storedRoles.containsKey(roleName)) {
+                addError(state.getErrors(), lineNumber, "unknown role " + roleName);
+            }
+        });
+    }
+
+    static void validateRecord(ObjectMapper objectMapper, ValidationState state, String line, long lineNumber) {
+        if (line.isBlank()) {
+            return;
+        }
+        BulkRecord record;
+        try {
+            record = objectMapper.readValue(line, BulkRecord.class);
+        } catch (JsonProcessingException e) {
+            addError(state.getErrors(), lineNumber, "unreadable record " + e.getOriginalMessage());
+            return;
+        }
+        if (null != record.getRole() && null != record.getRole().getName()) {
+            var roleEntity = record.getRole();
+            state.getRoleNames().add(roleEntity.getName());
+            state.getPendingReferences().remove(roleEntity.getName());
+            referenceRoles(state, roleEntity.getChildRoles(), lineNumber);
+        } else if (null != record.getUser() && null != record.getUser().getUsername()) {
+            referenceRoles(state, record.getUser().getRoles(), lineNumber);
+        } else {
+            addError(state.getErrors(), lineNumber, "record has neither a named role nor a user");
+        }
+    }
+
+    private static void referenceRoles(ValidationState state, List<String> references, long lineNumber) {
+        if (LambdaUtil.isEmptyCollection(references)) {
+            return;
+        }
+        references.stream()
+                .filter(roleName -> !state.getRoleNames().contains(roleName))
+                .forEach(roleName -> state.getPendingReferences().putIfAbsent(roleName, lineNumber));
+    }
+
+    private static void addError(List<String> errors, long lineNumber, String message) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add("line " + lineNumber + ": " + message);
+        }
+    }
+
+    /**
+     * @return true once the whole file is written
+     */
+    private boolean write(JobCheckpointEntity checkpoint, String bucket, String key, RateLimiter rateLimiter,
+                          long deadline) throws IOException {
+        try (var reader = openLines(offset -> openObject(bucket, key, offset), checkpoint)) {
+            var lineNumber = checkpoint.getLinesProcessed();
+            List<RoleEntity> roles = new ArrayList<>();
+            List<UserEntity> users = new ArrayList<>();
+            String line;
+            while (null != (line = reader.readLine())) {
+                lineNumber++;
+                if (!line.isBlank()) {
+                    var record = objectMapper.readValue(line, BulkRecord.class);
+                    if (null != record.getRole()) {
+                        roles.add(record.getRole());
+                    } else {
+                        users.add(record.getUser());
+                    }
+                }
+                if (roles.size() + users.size() == BATCH_SIZE) {
+                    writeBatch(checkpoint, roles, users, rateLimiter);
+                    moveTo(checkpoint, reader, lineNumber);
+                    dynamoDBMapper.save(checkpoint);
+                    if (System.currentTimeMillis() > deadline) {
+                        return false;
+                    }
+                }
+            }
+            writeBatch(checkpoint, roles, users, rateLimiter);
+            moveTo(checkpoint, reader, lineNumber);
+            dynamoDBMapper.save(checkpoint);
+            return true;
+        }
+    }
+
+    private void writeBatch(JobCheckpointEntity checkpoint, List<RoleEntity> roles, List<UserEntity> users,
+                            RateLimiter rateLimiter) {
+        if (roles.isEmpty() && users.isEmpty()) {
+            return;
+        }
+        List<Object> items = new ArrayList<>(roles.size() + users.size());
+        Map<String, Set<String>> parentsByChild = Map.of();
+        if (!roles.isEmpty()) {
+            Set<String> roleNames = roles.stream().map(RoleEntity::getName).collect(Collectors.toCollection(LinkedHashSet::new));
+            parentsByChild = parentIndex.parentsOf(roleNames);
+            var changeSeq = roleChangeSequence.next();
+            roleViews.markStale(parentIndex.ancestorsOf(roleNames), changeSeq);
+            var changedAt = System.currentTimeMillis();
+            for (RoleEntity roleEntity : roles) {
+                stampImportedRole(roleEntity, changeSeq, changedAt);
+                items.add(roleEntity);
+            }
+        }
+        if (!users.isEmpty()) {
+            var changeSeq = userChangeSequence.next();
+            var changedAt = System.currentTimeMillis();
+            for (UserEntity userEntity : users) {
+                userEntity.setChangeFeed(ChangeFeed.shardOf(userEntity.getUsername()));
+                userEntity.setChangeSeq(changeSeq);
+                userEntity.setChangedAt(changedAt);
+                items.add(userEntity);
+            }
+        }
+        rateLimiter.acquire(items.size());
+        var failedBatches = dynamoDBMapper.batchSave(items);
+        if (!failedBatches.isEmpty()) {
+            throw new IllegalStateException("Failed to import batch", failedBatches.get(0).getException());
+        }
+        parentsByChild.forEach((childRole, parentRoles) -> parentRoles.forEach(parentRole -> parentIndex.addParent(childRole, parentRole)));
+        checkpoint.getCounts().merge("roles", (long) roles.size(), Long::sum);
+        checkpoint.getCounts().merge("users", (long) users.size(), Long::sum);
+        roles.clear();
+        users.clear();
+    }
+
+    /**
+     * Reads the imported roles again, records the edges to their child roles and recomputes each batch of them
+     * together with all their ancestors. Users are skipped, and reading stops once every imported role was seen.
+     *
+     * @return true once every imported role is done
+     */
+    private boolean finalizeRoles(JobCheckpointEntity checkpoint, String bucket, String key, long deadline) throws IOException {
+        var importedRoles = checkpoint.getCounts().get("roles");
+        try (var reader = openLines(offset -> openObject(bucket, key, offset), checkpoint)) {
+            var lineNumber = checkpoint.getLinesProcessed();
+            var rolesDone = checkpoint.getCounts().getOrDefault("finalized", 0L);
+            List<RoleEntity> roles = new ArrayList<>();
+            String line;
+            while (rolesDone + roles.size() < importedRoles && null != (line = reader.readLine())) {
+                lineNumber++;
+                if (!line.isBlank()) {
+                    var record = objectMapper.readValue(line, BulkRecord.class);
+                    if (null != record.getRole()) {
+                        roles.add(record.getRole());
+                    }
+                }
+                if (roles.size() == FINALIZE_BATCH_SIZE) {
+                    rolesDone += linkAndRefresh(roles);
+                    checkpoint.getCounts().put("finalized", rolesDone);
+                    moveTo(checkpoint, reader, lineNumber);
+                    dynamoDBMapper.save(checkpoint);
+                    if (System.currentTimeMillis() > deadline) {
+                        return false;
+                    }
+                }
+            }
+            rolesDone += linkAndRefresh(roles);
+            checkpoint.getCounts().put("finalized", rolesDone);
+            moveTo(checkpoint, reader, lineNumber);
+            return true;
+        }
+    }
+
+    /**
+     * Puts an imported role on this table's change feed. Its view is cleared so it is recomputed against the
+     * imported hierarchy, and any tombstones are dropped since their sequences belong to another table's feed.
+     */
+    static void stampImportedRole(RoleEntity roleEntity, long changeSeq, long changedAt) {
+        roleEntity.setEffectivePermissions(null);
+        roleEntity.setGeneration(null);
+        roleEntity.setTombstones(null);
+        roleEntity.setTombstonesPrunedThrough(null);
+        roleEntity.setChangeFeed(ChangeFeed.shardOf(roleEntity.getName()));
+        roleEntity.setChangeSeq(changeSeq);
+        roleEntity.setChangedAt(changedAt);
+    }
+
+    private int linkAndRefresh(List<RoleEntity> roles) {
+        if (roles.isEmpty()) {
+            return 0;
+        }
+        Set<String> affected = new LinkedHashSet<>();
+        for (RoleEntity roleEntity : roles) {
+            affected.add(roleEntity.getName());
+            if (null != roleEntity.getChildRoles()) {
+                roleEntity.getChildRoles().forEach(childRole -> parentIndex.addParent(childRole, roleEntity.getName()));
+            }
+        }
+        affected.addAll(parentIndex.ancestorsOf(new HashSet<>(affected)));
+        var changeSeq = roleChangeSequence.next();
+        if (!roleViews.refresh(affected, false, changeSeq)) {
+            roleViews.markStale(affected, changeSeq);
+        }
+        var count = roles.size();
+        roles.clear();
+        return count;
+    }
+
+    private InputStream openObject(String bucket, String key, long offset) {
+        var request = new GetObjectRequest(bucket, key);
+        if (offset > 0) {
+            request.setRange(offset);
+        }
+        return amazonS3.getObject(request).getObjectContent();
+    }
+
+    /**
+     * Opens the file at the checkpoint's restart member and skips the lines of it already handled.
+     *
+     * @param openFrom opens the compressed file from the given byte offset
+     */
+    static GzipLineReader openLines(LongFunction<InputStream> openFrom, JobCheckpointEntity checkpoint) throws IOException {
+        var offset = checkpoint.getResumeOffset();
+        var reader = new GzipLineReader(openFrom.apply(offset), offset);
+        for (long skipped = 0; skipped < checkpoint.getResumeLine() && null != reader.readLine(); skipped++) {
+            // Lines of the restart member that were already handled.
+        }
+        return reader;
+    }
+
+    static void moveTo(JobCheckpointEntity checkpoint, GzipLineReader reader, long lineNumber) {
+        checkpoint.setResumeOffset(reader.getRestartOffset());
+        checkpoint.setResumeLine(reader.getLinesSinceRestart());
+        checkpoint.setLinesProcessed(lineNumber);
+    }
+
+    private void startPhase(JobCheckpointEntity checkpoint, ImportPhase phase) {
+        checkpoint.setPhase(phase.name());
+        checkpoint.setResumeOffset(0L);
+        checkpoint.setResumeLine(0L);
+        checkpoint.setLinesProcessed(0L);
+        dynamoDBMapper.save(checkpoint);
+    }
+
+    /**
+     * Points the checkpoint at a new scratch object, or none, and only then drops the old one, so a call that
+     * fails part way never leaves the checkpoint pointing at state it did not save.
+     */
+    private void replaceScratch(JobCheckpointEntity checkpoint, String bucket, String scratchKey) {
+        var previous = checkpoint.getScratchKey();
+        checkpoint.setScratchKey(scratchKey);
+        dynamoDBMapper.save(checkpoint);
+        if (null != previous) {
+            amazonS3.deleteObject(bucket, previous);
+        }
+    }
+
+    private <T> void appendMember(Path exportFile, List<T> items, BiConsumer<BulkRecord, T> setter) throws IOException {
+        try (var writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(
+                Files.newOutputStream(exportFile, StandardOpenOption.APPEND)), StandardCharsets.UTF_8))) {
+            for (T item : items) {
+                var record = new BulkRecord();
+                setter.accept(record, item);
+                writer.write(objectMapper.writeValueAsString(record));
+                writer.newLine();
+            }
+        }
+    }
+
+    private void uploadPart(JobCheckpointEntity checkpoint, String bucket, String key, Path exportFile) throws IOException {
+        var result = amazonS3.uploadPart(new UploadPartRequest()
+                .withBucketName(bucket)
+                .withKey(key)
+                .withUploadId(checkpoint.getUploadId())
+                .withPartNumber(checkpoint.getPartETags().size() + 1)
+                .withFile(exportFile.toFile())
+                .withPartSize(Files.size(exportFile)));
+        checkpoint.getPartETags().add(result.getPartETag().getETag());
+        Files.write(exportFile, new byte[0]);
+    }
+
+    private DynamoDBScanExpression scanFrom(String keyName, String cursor) {
+        var scanExpression = new DynamoDBScanExpression().withLimit(EXPORT_PAGE_SIZE);
+        if (null != cursor) {
+            scanExpression.setExclusiveStartKey(Map.of(keyName, new AttributeValue(cursor)));
+        }
+        return scanExpression;
+    }
+
+    private <T> String cursorOf(ScanResultPage<T> page, String keyName) {
+        return null == page.getLastEvaluatedKey() ? null : page.getLastEvaluatedKey().get(keyName).getS();
+    }
+
+    private long deadline(BulkTransferRequest transferRequest) {
+        return System.currentTimeMillis() + 1000L * LambdaUtil.clamp(transferRequest.getMaxSeconds(), MAX_SECONDS, MAX_SECONDS);
+    }
+
+    private boolean isLeased(JobCheckpointEntity checkpoint) {
+        return null != checkpoint && null != checkpoint.getLeaseUntil()
+                && checkpoint.getLeaseUntil() > System.currentTimeMillis();
+    }
+
+    /**
+     * Claims the checkpoint for this call. The save is version checked, so of two calls that loaded the same
+     * checkpoint only one gets past it; the other fails with a conditional check and answers 409.
+     */
+    private void lease(JobCheckpointEntity checkpoint, long deadline) {
+        checkpoint.setLeaseUntil(deadline + LEASE_MARGIN_MILLIS);
+        dynamoDBMapper.save(checkpoint);
+    }
+
+    private void release(JobCheckpointEntity checkpoint) {
+        if (null != checkpoint.getLeaseUntil()) {
+            checkpoint.setLeaseUntil(null);
+            dynamoDBMapper.save(checkpoint);
+        }
+    }
+
+    private APIGatewayV2HTTPResponse progress(JobCheckpointEntity checkpoint, int statusCode) throws JsonProcessingException {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("status", checkpoint.getStatus());
+        progress.put("phase", checkpoint.getPhase());
+        progress.put("linesProcessed", checkpoint.getLinesProcessed());
+        progress.put("roles", checkpoint.getCounts().get("roles"));
+        progress.put("users", checkpoint.getCounts().get("users"));
+        APIGatewayV2HTTPResponse response = new APIGatewayV2HTTPResponse();
+        response.setBody(objectMapper.writeValueAsString(progress));
+        response.setStatusCode(statusCode);
+        return response;
+    }
+
+    private APIGatewayV2HTTPResponse alreadyRunning() {
+        APIGatewayV2HTTPResponse response = new APIGatewayV2HTTPResponse();
+        response.setBody(String.format("{ \"message\": \"%s\" }", "Job is already running, retry later"));
+        response.setStatusCode(409);
+        return response;
+    }
+
+    private APIGatewayV2HTTPResponse missingLocation() {
+        APIGatewayV2HTTPResponse response = new APIGatewayV2HTTPResponse();
+        response.setBody(String.format("{ \"message\": \"%s\" }", "bucket and key are required"));
+        response.setStatusCode(400);
+        return response;
+    }
+
+    /**
+     * What validation has learned so far, carried between calls in a scratch object.
+     */
+    public static class ValidationState {
+        private Set<String> roleNames = new HashSet<>();
+        private Map<String, Long> pendingReferences = new HashMap<>();
+        private List<String> errors = new ArrayList<>();
+
+        public Set<String> getRoleNames() {
+            return roleNames;
+        }
+
+        public void setRoleNames(Set<String> roleNames) {
+            this.roleNames = roleNames;
+        }
+
+        public Map<String, Long> getPendingReferences() {
+            return pendingReferences;
+        }
+
+        public void setPendingReferences(Map<String, Long> pendingReferences) {
+            this.pendingReferences = pendingReferences;
+        }
+
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        public void setErrors(List<String> errors) {
+            this.errors = errors;
+        }
+    }
+}
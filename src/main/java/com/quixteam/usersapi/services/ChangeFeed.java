@@ -0,0 +1,112 @@
+package com.quixteam.usersapi.services;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Reads and stamps the changeFeed-changeSeq index. Items are spread over {@link #SHARDS} feed values by key so
+ * writes do not all land on one index partition; readers query every shard and merge by sequence.
+ */
+public class ChangeFeed {
+    static final String SHARD_PREFIX = "ALL#";
+    static final int SHARDS = 8;
+    /**
+     * How long a sequence may take from allocation until its write is visible on the index.
+     */
+    static final long SETTLE_MILLIS = 60_000;
+    /**
+     * Keeps a delta response well under the Lambda response size limit however far behind the reader is.
+     */
+    static final int PAGE_SIZE = 200;
+
+    private ChangeFeed() {
+    }
+
+    public static String shardOf(String key) {
+        return SHARD_PREFIX + Math.floorMod(key.hashCode(), SHARDS);
+    }
+
+    /**
+     * At most {@link #PAGE_SIZE} items changed after {@code since}, in sequence order. Each shard is read one page
+     * deep; a shard that has more to give caps the page at the last sequence it returned, so nothing below the page
+     * end is skipped.
+     */
+    public static <T> Page<T> changedSince(DynamoDBMapper dynamoDBMapper, Class<T> type, String indexName, long since,
+                                           ToLongFunction<T> changeSeq) {
+        List<List<T>> shardItems = new ArrayList<>();
+        List<Boolean> shardHasMore = new ArrayList<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            Map<String, AttributeValue> expressionAttributeValuesMap = new HashMap<>();
+            expressionAttributeValuesMap.put(":changeFeed", new AttributeValue().withS(SHARD_PREFIX + shard));
+            expressionAttributeValuesMap.put(":since", new AttributeValue().withN(String.valueOf(since)));
+            var changeQueryExpression = new DynamoDBQueryExpression<T>();
+            changeQueryExpression.withIndexName(indexName)
+                    .withConsistentRead(false)
+                    .withKeyConditionExpression("changeFeed = :changeFeed and changeSeq > :since")
+                    .withExpressionAttributeValues(expressionAttributeValuesMap)
+                    .withLimit(PAGE_SIZE);
+            var page = dynamoDBMapper.queryPage(type, changeQueryExpression);
+            shardItems.add(page.getResults());
+            shardHasMore.add(null != page.getLastEvaluatedKey());
+        }
+        return merge(shardItems, shardHasMore, changeSeq, PAGE_SIZE);
+    }
+
+    static <T> Page<T> merge(List<List<T>> shardItems, List<Boolean> shardHasMore, ToLongFunction<T> changeSeq,
+                             int limit) {
+        var end = Long.MAX_VALUE;
+        for (int shard = 0; shard < shardItems.size(); shard++) {
+            var items = shardItems.get(shard);
+            if (shardHasMore.get(shard) && !items.isEmpty()) {
+                end = Math.min(end, changeSeq.applyAsLong(items.get(items.size() - 1)));
+            }
+        }
+        var pageEnd = end;
+        List<T> items = shardItems.stream()
+                .flatMap(List::stream)
+                .filter(item -> changeSeq.applyAsLong(item) <= pageEnd)
+                .sorted(Comparator.comparingLong(changeSeq))
+                .collect(Collectors.toList());
+        var hasMore = shardHasMore.contains(true) || items.size() > limit;
+        return new Page<>(items.size() > limit ? new ArrayList<>(items.subList(0, limit)) : items, hasMore);
+    }
+
+    /**
+     * Sequences are allocated before their write lands and the index is eventually consistent, so sequence N can
+     * show up after N + 1. The cursor only advances to items changed at least {@link #SETTLE_MILLIS} ago, by which
+     * time every lower sequence is visible; newer items are sent again on the next read.
+     */
+    public static <T> long cursor(List<T> items, ToLongFunction<T> changeSeq, Function<T, Long> changedAt,
+                                  long since, long now) {
+        var settled = now - SETTLE_MILLIS;
+        return items.stream()
+                .filter(item -> null == changedAt.apply(item) || changedAt.apply(item) <= settled)
+                .mapToLong(changeSeq)
+                .max()
+                .orElse(since);
+    }
+
+    public static class Page<T> {
+        private final List<T> items;
+        private final boolean hasMore;
+
+        Page(List<T> items, boolean hasMore) {
+            this.items = items;
+            this.hasMore = hasMore;
+        }
+
+        public List<T> getItems() {
+            return items;
+        }
+
+        public boolean hasMore() {
+            return hasMore;
+        }
+    }
+}
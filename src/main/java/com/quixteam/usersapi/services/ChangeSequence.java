@@ -0,0 +1,37 @@
+package com.quixteam.usersapi.services;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+
+import java.util.Map;
+
+/**
+ * Monotonically increasing sequence stamped on every write to a table, backed by a counter item in the
+ * ChangeSequences table. Each value is allocated with a single atomic ADD, so concurrent writers never retry.
+ * A value is allocated before the write lands, so writes can become visible out of order; see
+ * {@link ChangeFeed#cursor} for how delta reads stay behind them.
+ */
+public class ChangeSequence {
+    static final String TABLE_NAME = "ChangeSequences";
+
+    private final AmazonDynamoDB amazonDynamoDB;
+    private final String name;
+
+    public ChangeSequence(AmazonDynamoDB amazonDynamoDB, String name) {
+        this.amazonDynamoDB = amazonDynamoDB;
+        this.name = name;
+    }
+
+    public long next() {
+        var result = amazonDynamoDB.updateItem(new UpdateItemRequest()
+                .withTableName(TABLE_NAME)
+                .withKey(Map.of("name", new AttributeValue(name)))
+                .withUpdateExpression("ADD #value :one")
+                .withExpressionAttributeNames(Map.of("#value", "value"))
+                .withExpressionAttributeValues(Map.of(":one", new AttributeValue().withN("1")))
+                .withReturnValues(ReturnValue.UPDATED_NEW));
+        return Long.parseLong(result.getAttributes().get("value").getN());
+    }
+}
@@ -0,0 +1,140 @@
+package com.quixteam.usersapi.services;
+
+import com.quixteam.usersapi.entity.Module;
+import com.quixteam.usersapi.entity.RoleEntity;
+import com.quixteam.usersapi.util.LambdaUtil;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Computes effective permissions: the modules of a role merged with the effective permissions of its child roles.
+ * Children are computed before their parents; roles left over are part of a cycle, or above one, and are iterated
+ * from an empty view until their union no longer grows.
+ */
+public class EffectivePermissions {
+    private final Function<Collection<String>, Map<String, RoleEntity>> roleLoader;
+
+    public EffectivePermissions(Function<Collection<String>, Map<String, RoleEntity>> roleLoader) {
+        this.roleLoader = roleLoader;
+    }
+
+    /**
+     * Computes the view of every target from scratch, ignoring what they have stored. Other roles reached through
+     * child roles contribute their stored view; those without one, or all of them when {@code recomputeChildren}
+     * is set, are computed as well.
+     *
+     * @return views by role name, for the targets and every role computed along the way
+     */
+    public Map<String, List<Module>> compute(Collection<RoleEntity> targets, boolean recomputeChildren) {
+        Map<String, RoleEntity> computing = new LinkedHashMap<>();
+        targets.forEach(role -> computing.put(role.getName(), role));
+        // Missing roles are kept as null so they are not loaded again.
+        Map<String, RoleEntity> knownRoles = new HashMap<>(computing);
+        Set<String> unloaded = new LinkedHashSet<>();
+        computing.values().forEach(role -> unloaded.addAll(childRolesOf(role)));
+        unloaded.removeAll(knownRoles.keySet());
+        while (!unloaded.isEmpty()) {
+            var loaded = roleLoader.apply(new ArrayList<>(unloaded));
+            Set<String> next = new LinkedHashSet<>();
+            for (String name : unloaded) {
+                var role = loaded.get(name);
+                knownRoles.put(name, role);
+                if (null != role && (recomputeChildren || null == role.getEffectivePermissions())) {
+                    computing.put(name, role);
+                    next.addAll(childRolesOf(role));
+                }
+            }
+            next.removeAll(knownRoles.keySet());
+            unloaded.clear();
+            unloaded.addAll(next);
+        }
+
+        Map<String, Integer> pendingChildren = new HashMap<>();
+        Map<String, List<String>> parentsByChild = new HashMap<>();
+        for (RoleEntity role : computing.values()) {
+            var children = childRolesOf(role).stream().distinct().filter(computing::containsKey)
+                    .collect(Collectors.toList());
+            pendingChildren.put(role.getName(), children.size());
+            children.forEach(child -> parentsByChild.computeIfAbsent(child, key -> new ArrayList<>()).add(role.getName()));
+        }
+        Deque<String> ready = new ArrayDeque<>();
+        pendingChildren.forEach((name, count) -> {
+            if (count == 0) {
+                ready.add(name);
+            }
+        });
+        Map<String, List<Module>> views = new HashMap<>();
+        while (!ready.isEmpty()) {
+            var name = ready.poll();
+            views.put(name, merge(computing.get(name), computing, knownRoles, views));
+            for (String parent : parentsByChild.getOrDefault(name, Collections.emptyList())) {
+                if (pendingChildren.merge(parent, -1, Integer::sum) == 0) {
+                    ready.add(parent);
+                }
+            }
+        }
+
+        var cyclic = computing.values().stream()
+                .filter(role -> !views.containsKey(role.getName()))
+                .collect(Collectors.toList());
+        cyclic.forEach(role -> views.put(role.getName(), Collections.emptyList()));
+        boolean changed = !cyclic.isEmpty();
+        while (changed) {
+            changed = false;
+            for (RoleEntity role : cyclic) {
+                var merged = merge(role, computing, knownRoles, views);
+                changed |= permissionCount(merged) != permissionCount(views.get(role.getName()));
+                views.put(role.getName(), merged);
+            }
+        }
+        return views;
+    }
+
+    private List<Module> merge(RoleEntity roleEntity, Map<String, RoleEntity> computing,
+                               Map<String, RoleEntity> knownRoles, Map<String, List<Module>> views) {
+        Map<String, Set<String>> permissionsByModule = new LinkedHashMap<>();
+        addModules(permissionsByModule, roleEntity.getModules());
+        for (String childName : childRolesOf(roleEntity)) {
+            if (computing.containsKey(childName)) {
+                addModules(permissionsByModule, views.get(childName));
+            } else if (null != knownRoles.get(childName)) {
+                addModules(permissionsByModule, knownRoles.get(childName).getEffectivePermissions());
+            }
+        }
+
+        List<Module> modules = new ArrayList<>();
+        permissionsByModule.forEach((name, permissions) -> {
+            var module = new Module();
+            module.setName(name);
+            module.setPermissions(new ArrayList<>(permissions));
+            modules.add(module);
+        });
+        return modules;
+    }
+
+    private void addModules(Map<String, Set<String>> permissionsByModule, List<Module> modules) {
+        if (LambdaUtil.isEmptyCollection(modules)) {
+            return;
+        }
+        for (Module module : modules) {
+            var permissions = permissionsByModule.computeIfAbsent(module.getName(), name -> new LinkedHashSet<>());
+            if (!LambdaUtil.isEmptyCollection(module.getPermissions())) {
+                permissions.addAll(module.getPermissions());
+            }
+        }
+    }
+
+    private int permissionCount(List<Module> modules) {
+        if (LambdaUtil.isEmptyCollection(modules)) {
+            return 0;
+        }
+        return modules.stream().mapToInt(module -> 1 + module.getPermissions().size()).sum();
+    }
+
+    private List<String> childRolesOf(RoleEntity roleEntity) {
+        var childRoles = roleEntity.getChildRoles();
+        return LambdaUtil.isEmptyCollection(childRoles) ? Collections.emptyList() : childRoles;
+    }
+}
@@ -0,0 +1,187 @@
+package com.quixteam.usersapi.services;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayV2HTTPEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayV2HTTPResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quixteam.usersapi.entity.RoleEntity;
+import com.quixteam.usersapi.requestbody.BackfillRequest;
+import com.quixteam.usersapi.util.LambdaUtil;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * One-off backfill of data written before the current model, run in time boxed steps. Each call works page by page
+ * until its budget runs out and answers 202 with the phase and cursor to send back, or 200 once every phase ran.
+ * <ul>
+ *     <li>{@code LINK} records the parent edges of every role's child roles.</li>
+ *     <li>{@code MATERIALIZE} recomputes every stored view from scratch, ignoring the views already stored.</li>
+ *     <li>{@code STAMP_ROLES} and {@code STAMP_USERS} put items written without a change sequence on their change
+ *     feed shard.</li>
+ * </ul>
+ */
+public class MigrationService {
+    enum Phase { LINK, MATERIALIZE, STAMP_ROLES, STAMP_USERS }
+
+    private static final int PAGE_SIZE = 100;
+    // Leaves room under the API Gateway integration timeout to answer.
+    private static final int MAX_SECONDS = 25;
+
+    private final ObjectMapper objectMapper;
+    private final DynamoDBMapper dynamoDBMapper;
+    private final AmazonDynamoDB amazonDynamoDB;
+    private final ChangeSequence roleChangeSequence;
+    private final ChangeSequence userChangeSequence;
+    private final RoleParentIndex parentIndex;
+    private final RoleViews roleViews;
+
+    public MigrationService(ObjectMapper objectMapper, DynamoDBMapper dynamoDBMapper, AmazonDynamoDB amazonDynamoDB) {
+        this.objectMapper = objectMapper;
+        this.dynamoDBMapper = dynamoDBMapper;
+        this.amazonDynamoDB = amazonDynamoDB;
+        this.roleChangeSequence = new ChangeSequence(amazonDynamoDB, "Roles");
+        this.userChangeSequence = new ChangeSequence(amazonDynamoDB, "Users");
+        this.parentIndex = new RoleParentIndex(amazonDynamoDB);
+        this.roleViews = new RoleViews(dynamoDBMapper, amazonDynamoDB);
+    }
+
+    public APIGatewayV2HTTPResponse backfill(APIGatewayV2HTTPEvent event) throws JsonProcessingException {
+        var body = event.getBody();
+        var backfillRequest = null == body || body.isBlank()
+                ? new BackfillRequest() : objectMapper.readValue(body, BackfillRequest.class);
+        var deadline = System.currentTimeMillis()
+                + 1000L * LambdaUtil.clamp(backfillRequest.getMaxSeconds(), MAX_SECONDS, MAX_SECONDS);
+
+        Phase phase;
+        try {
+            phase = null == backfillRequest.getPhase() ? Phase.LINK : Phase.valueOf(backfillRequest.getPhase());
+        } catch (IllegalArgumentException e) {
+            APIGatewayV2HTTPResponse response = new APIGatewayV2HTTPResponse();
+            response.setBody(String.format("{ \"message\": \"%s\" }", "Unknown phase " + backfillRequest.getPhase()));
+            response.setStatusCode(400);
+            return response;
+        }
+
+        var cursor = backfillRequest.getCursor();
+        long processed = 0;
+        while (null != phase && System.currentTimeMillis() < deadline) {
+            PageResult page;
+            if (phase == Phase.LINK) {
+                page = linkPage(cursor);
+            } else if (phase == Phase.MATERIALIZE) {
+                page = materializePage(cursor);
+            } else if (phase == Phase.STAMP_ROLES) {
+                page = stampPage("Roles", "name", roleChangeSequence, cursor);
+            } else {
+                page = stampPage("Users", "username", userChangeSequence, cursor);
+            }
+            processed += page.processed;
+            cursor = page.cursor;
+            if (null == cursor) {
+                phase = phase.ordinal() + 1 < Phase.values().length ? Phase.values()[phase.ordinal() + 1] : null;
+            }
+        }
+
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("phase", null == phase ? null : phase.name());
+        progress.put("cursor", cursor);
+        progress.put("processed", processed);
+        APIGatewayV2HTTPResponse response = new APIGatewayV2HTTPResponse();
+        response.setBody(objectMapper.writeValueAsString(progress));
+        response.setStatusCode(null == phase ? 200 : 202);
+        return response;
+    }
+
+    private PageResult linkPage(String cursor) {
+        var page = scanRoles(cursor);
+        page.getResults().forEach(role -> {
+            if (null != role.getChildRoles()) {
+                role.getChildRoles().forEach(childRole -> parentIndex.addParent(childRole, role.getName()));
+            }
+        });
+        return new PageResult(page.getResults().size(), page.getLastEvaluatedKey(), "name");
+    }
+
+    private PageResult materializePage(String cursor) {
+        var page = scanRoles(cursor);
+        if (!page.getResults().isEmpty()) {
+            var roleNames = page.getResults().stream().map(RoleEntity::getName).collect(Collectors.toList());
+            var changeSeq = roleChangeSequence.next();
+            if (!roleViews.refresh(roleNames, true, changeSeq)) {
+                roleViews.markStale(roleNames, changeSeq);
+            }
+        }
+        return new PageResult(page.getResults().size(), page.getLastEvaluatedKey(), "name");
+    }
+
+    /**
+     * Only touches the feed attributes, and only while the item is still unstamped, so a concurrent write keeps
+     * the sequence it allocated.
+     */
+    private PageResult stampPage(String tableName, String keyName, ChangeSequence changeSequence, String cursor) {
+        var scanRequest = new ScanRequest()
+                .withTableName(tableName)
+                .withLimit(PAGE_SIZE)
+                .withConsistentRead(true)
+                .withProjectionExpression("#key, #changeFeed")
+                .withExpressionAttributeNames(Map.of("#key", keyName, "#changeFeed", "changeFeed"));
+        if (null != cursor) {
+            scanRequest.withExclusiveStartKey(Map.of(keyName, new AttributeValue(cursor)));
+        }
+        var result = amazonDynamoDB.scan(scanRequest);
+        var unstamped = result.getItems().stream()
+                .filter(item -> null == item.get("changeFeed"))
+                .map(item -> item.get(keyName).getS())
+                .collect(Collectors.toList());
+        if (!unstamped.isEmpty()) {
+            var changeSeq = String.valueOf(changeSequence.next());
+            var changedAt = String.valueOf(System.currentTimeMillis());
+            for (String key : unstamped) {
+                try {
+                    amazonDynamoDB.updateItem(new UpdateItemRequest()
+                            .withTableName(tableName)
+                            .withKey(Map.of(keyName, new AttributeValue(key)))
+                            .withUpdateExpression("SET #changeFeed = :changeFeed, #changeSeq = :changeSeq,"
+                                    + " #changedAt = :changedAt")
+                            .withConditionExpression("attribute_exists(#key) AND attribute_not_exists(#changeFeed)")
+                            .withExpressionAttributeNames(Map.of("#key", keyName, "#changeFeed", "changeFeed",
+                                    "#changeSeq", "changeSeq", "#changedAt", "changedAt"))
+                            .withExpressionAttributeValues(Map.of(
+                                    ":changeFeed", new AttributeValue(ChangeFeed.shardOf(key)),
+                                    ":changeSeq", new AttributeValue().withN(changeSeq),
+                                    ":changedAt", new AttributeValue().withN(changedAt))));
+                } catch (ConditionalCheckFailedException e) {
+                    // Written, and stamped, since the scan.
+                }
+            }
+        }
+        return new PageResult(result.getItems().size(), result.getLastEvaluatedKey(), keyName);
+    }
+
+    private ScanResultPage<RoleEntity> scanRoles(String cursor) {
+        var scanExpression = new DynamoDBScanExpression().withLimit(PAGE_SIZE).withConsistentRead(true);
+        if (null != cursor) {
+            scanExpression.withExclusiveStartKey(Map.of("name", new AttributeValue(cursor)));
+        }
+        return dynamoDBMapper.scanPage(RoleEntity.class, scanExpression);
+    }
+
+    private static final class PageResult {
+        private final int processed;
+        private final String cursor;
+
+        PageResult(int processed, Map<String, AttributeValue> lastEvaluatedKey, String keyName) {
+            this.processed = processed;
+            this.cursor = null == lastEvaluatedKey ? null : lastEvaluatedKey.get(keyName).getS();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.quixteam.usersapi.services;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.quixteam.usersapi.util.LambdaUtil;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Child role -> parent role edges, kept on each Roles item as the {@code parentRoles} string set so every container
+ * reads the same hierarchy. The attribute is not mapped on the entity, so mapper saves leave it alone. Edges are
+ * only added, always before the parent saves the child, which keeps the set a superset of the real parents: an
+ * extra parent only costs a recompute that changes nothing.
+ */
+public class RoleParentIndex {
+    static final String PARENT_ROLES = "parentRoles";
+    private static final String TABLE_NAME = "Roles";
+    private static final int MAX_BATCH_KEYS = 100;
+
+    private final AmazonDynamoDB amazonDynamoDB;
+
+    public RoleParentIndex(AmazonDynamoDB amazonDynamoDB) {
+        this.amazonDynamoDB = amazonDynamoDB;
+    }
+
+    public void addParent(String childRole, String parentRole) {
+        try {
+            amazonDynamoDB.updateItem(new UpdateItemRequest()
+                    .withTableName(TABLE_NAME)
+                    .withKey(Map.of("name", new AttributeValue(childRole)))
+                    .withUpdateExpression("ADD #parentRoles :parent")
+                    .withConditionExpression("attribute_exists(#name)")
+                    .withExpressionAttributeNames(Map.of("#parentRoles", PARENT_ROLES, "#name", "name"))
+                    .withExpressionAttributeValues(Map.of(":parent", new AttributeValue().withSS(parentRole))));
+        } catch (ConditionalCheckFailedException e) {
+            // The child role does not exist, so there is no edge to record.
+        }
+    }
+
+    public Set<String> ancestorsOf(String roleName) {
+        return ancestorsOf(List.of(roleName), this::parentsOf);
+    }
+
+    /**
+     * Ancestors of any of the given roles, leaving out the roles themselves.
+     */
+    public Set<String> ancestorsOf(Collection<String> roleNames) {
+        return ancestorsOf(roleNames, this::parentsOf);
+    }
+
+    static Set<String> ancestorsOf(String roleName, Function<Collection<String>, Map<String, Set<String>>> parentLoader) {
+        return ancestorsOf(List.of(roleName), parentLoader);
+    }
+
+    /**
+     * Walks the parent edges one level per load, so a hierarchy of depth d costs d batch reads.
+     */
+    static Set<String> ancestorsOf(Collection<String> roleNames,
+                                   Function<Collection<String>, Map<String, Set<String>>> parentLoader) {
+        Set<String> ancestors = new LinkedHashSet<>();
+        Collection<String> level = roleNames;
+        while (!level.isEmpty()) {
+            List<String> next = new ArrayList<>();
+            for (Set<String> parents : parentLoader.apply(level).values()) {
+                for (String parent : parents) {
+                    if (!roleNames.contains(parent) && ancestors.add(parent)) {
+                        next.add(parent);
+                    }
+                }
+            }
+            level = next;
+        }
+        return ancestors;
+    }
+
+    /**
+     * Reads strongly consistently, so an edge added just before a parent saved its child is always seen.
+     */
+    public Map<String, Set<String>> parentsOf(Collection<String> roleNames) {
+        Map<String, Set<String>> parentsByChild = new HashMap<>();
+        List<String> names = new ArrayList<>(roleNames);
+        for (int from = 0; from < names.size(); from += MAX_BATCH_KEYS) {
+            var keys = names.subList(from, Math.min(from + MAX_BATCH_KEYS, names.size())).stream()
+                    .map(name -> Map.of("name", new AttributeValue(name)))
+                    .collect(Collectors.toList());
+            Map<String, KeysAndAttributes> requestItems = Map.of(TABLE_NAME, new KeysAndAttributes()
+                    .withKeys(keys)
+                    .withConsistentRead(true)
+                    .withProjectionExpression("#name, #parentRoles")
+                    .withExpressionAttributeNames(Map.of("#name", "name", "#parentRoles", PARENT_ROLES)));
+            while (null != requestItems && !requestItems.isEmpty()) {
+                var result = amazonDynamoDB.batchGetItem(new BatchGetItemRequest().withRequestItems(requestItems));
+                result.getResponses().getOrDefault(TABLE_NAME, Collections.emptyList()).forEach(item -> {
+                    var parentRoles = item.get(PARENT_ROLES);
+                    if (null != parentRoles && !LambdaUtil.isEmptyCollection(parentRoles.getSS())) {
+                        parentsByChild.put(item.get("name").getS(), new HashSet<>(parentRoles.getSS()));
+                    }
+                });
+                requestItems = result.getUnprocessedKeys();
+            }
+        }
+        return parentsByChild;
+    }
+}
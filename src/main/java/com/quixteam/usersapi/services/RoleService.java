@@ -1,5 +1,6 @@
 package com.quixteam.usersapi.services;
 
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
@@ -7,6 +8,7 @@ import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayV2HTTPEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayV2HTTPResponse;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.quixteam.usersapi.entity.Module;
 import com.quixteam.usersapi.entity.RoleEntity;
@@ -18,11 +20,17 @@ import java.util.stream.Collectors;
 public class RoleService {
     private final ObjectMapper objectMapper;
     private final DynamoDBMapper dynamoDBMapper;
+    private final ChangeSequence changeSequence;
+    private final RoleParentIndex parentIndex;
+    private final RoleViews roleViews;
 
 
-    public RoleService(ObjectMapper objectMapper, DynamoDBMapper dynamoDBMapper) {
+    public RoleService(ObjectMapper objectMapper, DynamoDBMapper dynamoDBMapper, AmazonDynamoDB amazonDynamoDB) {
         this.objectMapper = objectMapper;
         this.dynamoDBMapper = dynamoDBMapper;
+        this.changeSequence = new ChangeSequence(amazonDynamoDB, "Roles");
+        this.parentIndex = new RoleParentIndex(amazonDynamoDB);
+        this.roleViews = new RoleViews(dynamoDBMapper, amazonDynamoDB);
     }
 
     private List<String> getRoleNames() {
@@ -43,12 +51,15 @@ public class RoleService {
         int statusCode;
 
         var roleRequest = objectMapper.readValue(body, RoleEntity.class);
+        // Maintained by the service, never taken from the client.
+        roleRequest.setChangeSeq(null);
         List<String> roleNames = getRoleNames();
 
         if (roleNames.stream().anyMatch(role -> role.equalsIgnoreCase(roleRequest.getName()))) {
             output = String.format("{ \"message\": \"%s\" }", "Role already exist with " + roleRequest.getName());
             statusCode = 409;
         } else {
+            addParentEdges(roleRequest.getName(), roleRequest.getChildRoles());
             saveRole(roleRequest);
             statusCode = 200;
         }
@@ -58,8 +69,59 @@ public class RoleService {
         return response;
     }
 
+    private void addParentEdges(String roleName, Collection<String> childRoles) {
+        if (!LambdaUtil.isEmptyCollection(childRoles)) {
+            childRoles.forEach(childRole -> parentIndex.addParent(childRole, roleName));
+        }
+    }
+
+    /**
+     * Saves the role version checked on its generation, then recomputes the views of the role and its ancestors.
+     */
     private void saveRole(RoleEntity roleEntity) {
+        var changeSeq = changeSequence.next();
+        var ancestors = parentIndex.ancestorsOf(roleEntity.getName());
+        roleViews.markStale(ancestors, changeSeq);
+
+        roleEntity.setEffectivePermissions(null);
+        roleEntity.setChangeFeed(ChangeFeed.shardOf(roleEntity.getName()));
+        roleEntity.setChangeSeq(changeSeq);
+        roleEntity.setChangedAt(System.currentTimeMillis());
+        if (!LambdaUtil.isEmptyCollection(roleEntity.getTombstones())) {
+            roleEntity.getTombstones().stream()
+                    .filter(tombstone -> null == tombstone.getChangeSeq())
+                    .forEach(tombstone -> tombstone.setChangeSeq(changeSeq));
+        }
         dynamoDBMapper.save(roleEntity);
+
+        Set<String> affected = new LinkedHashSet<>();
+        affected.add(roleEntity.getName());
+        affected.addAll(ancestors);
+        roleViews.refresh(affected, false, changeSeq);
+    }
+
+    public APIGatewayV2HTTPResponse getEffectivePermissions(APIGatewayV2HTTPEvent event) throws JsonProcessingException {
+        var pathParams = event.getPathParameters();
+        var roleName = pathParams.get("roleName");
+        String output;
+        int statusCode;
+
+        var roleEntity = roleViews.loadRole(roleName);
+        if (null == roleEntity) {
+            output = String.format("{ \"message\": \"%s\" }", "Role does not exist for" + roleName);
+            statusCode = 404;
+        } else {
+            Map<String, Object> view = new LinkedHashMap<>();
+            view.put("name", roleEntity.getName());
+            view.put("generation", roleEntity.getGeneration());
+            view.put("modules", roleViews.viewOf(roleEntity));
+            output = objectMapper.writeValueAsString(view);
+            statusCode = 200;
+        }
+        APIGatewayV2HTTPResponse response = new APIGatewayV2HTTPResponse();
+        response.setBody(output);
+        response.setStatusCode(statusCode);
+        return response;
     }
 
     public APIGatewayV2HTTPResponse updateRole(APIGatewayV2HTTPEvent event) throws JsonProcessingException {
@@ -89,6 +151,8 @@ public class RoleService {
                 }
                 childRoles.addAll(childRolesRequest);
                 roleEntity.setChildRoles(childRoles.stream().distinct().collect(Collectors.toList()));
+                // Recorded before the save so a concurrent change of a new child always finds this parent.
+                addParentEdges(roleName, roleEntity.getChildRoles());
                 saveRole(roleEntity);
                 statusCode = 200;
             }
@@ -101,17 +165,44 @@ public class RoleService {
     }
 
 
-    public APIGatewayV2HTTPResponse getAllRoles() throws JsonProcessingException {
+    public APIGatewayV2HTTPResponse getAllRoles(APIGatewayV2HTTPEvent event) throws JsonProcessingException {
+        var since = LambdaUtil.getQueryParameter(event, "since");
+        String output;
+        int statusCode = 200;
 
-        var roleEntities = getRoles();
-        var output = objectMapper.writeValueAsString(roleEntities);
+        if (null == since) {
+            output = objectMapper.writeValueAsString(getRoles());
+        } else if (!since.matches("\\d+")) {
+            output = String.format("{ \"message\": \"%s\" }", "Invalid change sequence " + since);
+            statusCode = 400;
+        } else {
+            var sinceSeq = Long.parseLong(since);
+            var page = ChangeFeed.changedSince(dynamoDBMapper, RoleEntity.class, RoleEntity.CHANGE_FEED_INDEX,
+                    sinceSeq, RoleEntity::getChangeSeq);
+            var roleEntities = page.getItems();
+            var resyncRequired = roleEntities.stream().anyMatch(role -> Tombstones.resyncRequired(role, sinceSeq));
+            List<Map<String, Object>> items = new ArrayList<>();
+            for (RoleEntity roleEntity : roleEntities) {
+                Map<String, Object> item = objectMapper.convertValue(roleEntity, new TypeReference<LinkedHashMap<String, Object>>() {
+                });
+                item.put("tombstones", Tombstones.since(roleEntity.getTombstones(), sinceSeq));
+                items.add(item);
+            }
+            Map<String, Object> delta = new LinkedHashMap<>();
+            delta.put("sequence", ChangeFeed.cursor(roleEntities, RoleEntity::getChangeSeq, RoleEntity::getChangedAt,
+                    sinceSeq, System.currentTimeMillis()));
+            delta.put("hasMore", page.hasMore());
+            // Deletions older than the cursor were pruned, only a full read is complete.
+            delta.put("resyncRequired", resyncRequired);
+            delta.put("items", items);
+            output = objectMapper.writeValueAsString(delta);
+        }
         APIGatewayV2HTTPResponse response = new APIGatewayV2HTTPResponse();
         response.setBody(output);
-        response.setStatusCode(200);
+        response.setStatusCode(statusCode);
         return response;
     }
 
-
     public APIGatewayV2HTTPResponse createModule(APIGatewayV2HTTPEvent event) throws JsonProcessingException {
         var pathParams = event.getPathParameters();
         var roleName = pathParams.get("roleName");
@@ -134,6 +225,7 @@ public class RoleService {
             }
             modules.add(module);
             roleEntity.setModules(modules);
+            Tombstones.clear(roleEntity, module.getName(), module.getPermissions());
             saveRole(roleEntity);
             statusCode = 200;
 
@@ -154,6 +246,7 @@ public class RoleService {
         var getQueryExpression = new DynamoDBQueryExpression<RoleEntity>();
         var conditionExpression = "#roleName = :roleValue";
         getQueryExpression.withKeyConditionExpression(conditionExpression)
+                .withConsistentRead(true)
                 .withExpressionAttributeNames(expressionAttributeNames)
                 .withExpressionAttributeValues(expressionAttributeValuesMap);
         return dynamoDBMapper.query(RoleEntity.class, getQueryExpression).stream().findAny();
@@ -180,6 +273,8 @@ public class RoleService {
             var modulesToDelete =
                     modules.stream().filter(module -> moduleDeleteRequest.contains(module.getName())).collect(Collectors.toSet());
             roleEntity.getModules().removeAll(modulesToDelete);
+            var now = System.currentTimeMillis();
+            modulesToDelete.forEach(module -> Tombstones.add(roleEntity, module.getName(), null, now));
             saveRole(roleEntity);
             statusCode = 200;
         }
@@ -220,6 +315,7 @@ public class RoleService {
                 }
                 permissionList.addAll(permissions);
                 moduleEntity.setPermissions(permissionList.stream().distinct().collect(Collectors.toList()));
+                Tombstones.clear(roleEntity, moduleEntity.getName(), permissions);
 
                 saveRole(roleEntity);
                 statusCode = 200;
@@ -261,6 +357,7 @@ public class RoleService {
 
                 permissions.removeAll(permissionToDelete);
                 moduleEntity.setPermissions(permissions);
+                Tombstones.add(roleEntity, moduleEntity.getName(), permissionToDelete, System.currentTimeMillis());
                 saveRole(roleEntity);
                 statusCode = 200;
             }
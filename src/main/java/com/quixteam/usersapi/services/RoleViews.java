@@ -0,0 +1,126 @@
+package com.quixteam.usersapi.services;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.quixteam.usersapi.entity.Module;
+import com.quixteam.usersapi.entity.RoleEntity;
+import com.quixteam.usersapi.entity.RoleViewEntity;
+import com.quixteam.usersapi.util.LambdaUtil;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the materialized effective permissions of roles. A missing view marks a stale role, which readers compute
+ * in memory. Writers mark the ancestors of a role stale before changing it, recompute them afterwards, and mark
+ * them stale again when the recompute gives up, so a failure part way leaves views to be computed on read rather
+ * than granting what the hierarchy no longer does.
+ */
+public class RoleViews {
+    private static final int MAX_ATTEMPTS = 5;
+    private static final DynamoDBMapperConfig CONSISTENT_READ = DynamoDBMapperConfig.builder()
+            .withConsistentReads(DynamoDBMapperConfig.ConsistentReads.CONSISTENT)
+            .build();
+    private static final DynamoDBMapperConfig VIEW_ONLY = DynamoDBMapperConfig.builder()
+            .withSaveBehavior(DynamoDBMapperConfig.SaveBehavior.UPDATE_SKIP_NULL_ATTRIBUTES)
+            .build();
+
+    private final DynamoDBMapper dynamoDBMapper;
+    private final AmazonDynamoDB amazonDynamoDB;
+
+    public RoleViews(DynamoDBMapper dynamoDBMapper, AmazonDynamoDB amazonDynamoDB) {
+        this.dynamoDBMapper = dynamoDBMapper;
+        this.amazonDynamoDB = amazonDynamoDB;
+    }
+
+    public RoleEntity loadRole(String roleName) {
+        return dynamoDBMapper.load(RoleEntity.class, roleName, CONSISTENT_READ);
+    }
+
+    public Map<String, RoleEntity> loadRoles(Collection<String> roleNames) {
+        Map<String, RoleEntity> roles = new LinkedHashMap<>();
+        if (LambdaUtil.isEmptyCollection(roleNames)) {
+            return roles;
+        }
+        List<RoleEntity> keys = roleNames.stream().map(name -> {
+            var key = new RoleEntity();
+            key.setName(name);
+            return key;
+        }).collect(Collectors.toList());
+        dynamoDBMapper.batchLoad(keys, CONSISTENT_READ).values().stream()
+                .flatMap(List::stream)
+                .map(RoleEntity.class::cast)
+                .forEach(role -> roles.put(role.getName(), role));
+        return roles;
+    }
+
+    /**
+     * The stored view of the role, or one computed in memory when it is stale. Nothing is written.
+     */
+    public List<Module> viewOf(RoleEntity roleEntity) {
+        if (null != roleEntity.getEffectivePermissions()) {
+            return roleEntity.getEffectivePermissions();
+        }
+        return new EffectivePermissions(this::loadRoles).compute(List.of(roleEntity), false).get(roleEntity.getName());
+    }
+
+    /**
+     * Drops the stored views and bumps the generation, so a recompute that read the roles earlier fails its
+     * version check instead of writing a view from before the change.
+     */
+    public void markStale(Collection<String> roleNames, long changeSeq) {
+        for (String roleName : roleNames) {
+            try {
+                amazonDynamoDB.updateItem(new UpdateItemRequest()
+                        .withTableName("Roles")
+                        .withKey(Map.of("name", new AttributeValue(roleName)))
+                        .withUpdateExpression("REMOVE #view SET #changeFeed = :changeFeed, #changeSeq = :changeSeq,"
+                                + " #changedAt = :changedAt ADD #generation :one")
+                        .withConditionExpression("attribute_exists(#name)")
+                        .withExpressionAttributeNames(Map.of("#name", "name", "#view", "effectivePermissions",
+                                "#changeFeed", "changeFeed", "#changeSeq", "changeSeq", "#changedAt", "changedAt",
+                                "#generation", "generation"))
+                        .withExpressionAttributeValues(Map.of(
+                                ":changeFeed", new AttributeValue(ChangeFeed.shardOf(roleName)),
+                                ":changeSeq", new AttributeValue().withN(String.valueOf(changeSeq)),
+                                ":changedAt", new AttributeValue().withN(String.valueOf(System.currentTimeMillis())),
+                                ":one", new AttributeValue().withN("1"))));
+            } catch (ConditionalCheckFailedException e) {
+                // The role is gone, there is no view to drop.
+            }
+        }
+    }
+
+    /**
+     * Recomputes the views of the given roles from a consistent read and writes only those views, version checked
+     * on the generation. A conflict means another writer changed one of them, so the whole set is read again.
+     *
+     * @return false when the attempts ran out; roles not written keep whatever view they had
+     */
+    public boolean refresh(Collection<String> roleNames, boolean recomputeChildren, long changeSeq) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            var roles = loadRoles(roleNames);
+            var views = new EffectivePermissions(this::loadRoles).compute(roles.values(), recomputeChildren);
+            try {
+                for (RoleEntity role : roles.values()) {
+                    var view = new RoleViewEntity();
+                    view.setName(role.getName());
+                    view.setEffectivePermissions(views.get(role.getName()));
+                    view.setGeneration(role.getGeneration());
+                    view.setChangeFeed(ChangeFeed.shardOf(role.getName()));
+                    view.setChangeSeq(changeSeq);
+                    view.setChangedAt(System.currentTimeMillis());
+                    dynamoDBMapper.save(view, VIEW_ONLY);
+                }
+                return true;
+            } catch (ConditionalCheckFailedException e) {
+                // Read the roles again and recompute.
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,90 @@
+package com.quixteam.usersapi.services;
+
+import com.quixteam.usersapi.entity.RoleEntity;
+import com.quixteam.usersapi.entity.Tombstone;
+import com.quixteam.usersapi.util.LambdaUtil;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Tombstones kept on a role so delta readers learn about removed modules and permissions. They are pruned once
+ * older than the retention window; the highest pruned sequence is kept on the role so a reader whose cursor is
+ * older knows it missed deletions and has to read everything again.
+ */
+public class Tombstones {
+    static final long RETENTION_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    private Tombstones() {
+    }
+
+    public static void add(RoleEntity roleEntity, String moduleName, Collection<String> permissions, long now) {
+        var tombstones = roleEntity.getTombstones();
+        if (LambdaUtil.isEmptyCollection(tombstones)) {
+            tombstones = new ArrayList<>();
+        }
+        if (null == permissions) {
+            tombstones.add(tombstone(moduleName, null, now));
+        } else {
+            for (String permission : permissions) {
+                tombstones.add(tombstone(moduleName, permission, now));
+            }
+        }
+        roleEntity.setTombstones(tombstones);
+        prune(roleEntity, now);
+    }
+
+    public static void clear(RoleEntity roleEntity, String moduleName, Collection<?> permissions) {
+        var tombstones = roleEntity.getTombstones();
+        if (LambdaUtil.isEmptyCollection(tombstones)) {
+            return;
+        }
+        tombstones.removeIf(tombstone -> tombstone.getModule().equalsIgnoreCase(moduleName)
+                && (null == tombstone.getPermission() || (null != permissions && permissions.contains(tombstone.getPermission()))));
+    }
+
+    static void prune(RoleEntity roleEntity, long now) {
+        var tombstones = roleEntity.getTombstones();
+        if (LambdaUtil.isEmptyCollection(tombstones)) {
+            return;
+        }
+        var expired = now - RETENTION_MILLIS;
+        var prunedThrough = roleEntity.getTombstonesPrunedThrough();
+        for (Iterator<Tombstone> iterator = tombstones.iterator(); iterator.hasNext(); ) {
+            var tombstone = iterator.next();
+            if (null == tombstone.getDeletedAt()) {
+                // Written before tombstones were dated, the retention starts now.
+                tombstone.setDeletedAt(now);
+            } else if (tombstone.getDeletedAt() < expired) {
+                iterator.remove();
+                if (null != tombstone.getChangeSeq()
+                        && (null == prunedThrough || tombstone.getChangeSeq() > prunedThrough)) {
+                    prunedThrough = tombstone.getChangeSeq();
+                }
+            }
+        }
+        roleEntity.setTombstonesPrunedThrough(prunedThrough);
+    }
+
+    public static List<Tombstone> since(List<Tombstone> tombstones, long since) {
+        if (LambdaUtil.isEmptyCollection(tombstones)) {
+            return tombstones;
+        }
+        return tombstones.stream()
+                .filter(tombstone -> null != tombstone.getChangeSeq() && tombstone.getChangeSeq() > since)
+                .collect(Collectors.toList());
+    }
+
+    public static boolean resyncRequired(RoleEntity roleEntity, long since) {
+        return null != roleEntity.getTombstonesPrunedThrough() && roleEntity.getTombstonesPrunedThrough() > since;
+    }
+
+    private static Tombstone tombstone(String moduleName, String permission, long now) {
+        var tombstone = new Tombstone();
+        tombstone.setModule(moduleName);
+        tombstone.setPermission(permission);
+        tombstone.setDeletedAt(now);
+        return tombstone;
+    }
+}
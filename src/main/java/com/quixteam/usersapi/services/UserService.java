@@ -4,33 +4,57 @@ import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProvider;
 import com.amazonaws.services.cognitoidp.model.AdminDisableUserRequest;
 import com.amazonaws.services.cognitoidp.model.AttributeType;
 import com.amazonaws.services.cognitoidp.model.SignUpRequest;
+import com.amazonaws.services.cognitoidp.model.TooManyRequestsException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayV2HTTPEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayV2HTTPResponse;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.quixteam.usersapi.entity.RoleEntity;
 import com.quixteam.usersapi.entity.UserEntity;
+import com.quixteam.usersapi.requestbody.BulkUserRequest;
 import com.quixteam.usersapi.requestbody.CreateUserRequest;
 import com.quixteam.usersapi.util.LambdaUtil;
+import com.quixteam.usersapi.util.RateLimiter;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class UserService {
     private static final String USER_POOL_ID = "us-east-2_nv9bPAWXQ";
     private static final String APP_CLIENT_ID = "5b0of4v9vle7nek3l98ht3arc";
+    private static final int BULK_CHUNK_SIZE = 100;
+    private static final int DEFAULT_BULK_CONCURRENCY = 8;
+    private static final int MAX_BULK_CONCURRENCY = 16;
+    // No user is started after this; one already started finishes well inside the API Gateway integration timeout.
+    private static final int MAX_BULK_SECONDS = 25;
+    // Stays under the default Cognito quota for admin user account operations.
+    private static final int MAX_COGNITO_REQUESTS_PER_SECOND = 20;
+    private static final int MAX_COGNITO_ATTEMPTS = 5;
+    private static final RateLimiter COGNITO_RATE_LIMITER = new RateLimiter(MAX_COGNITO_REQUESTS_PER_SECOND);
     private final ObjectMapper objectMapper;
     private final DynamoDBMapper dynamoDBMapper;
+    private final AmazonDynamoDB amazonDynamoDB;
     private final AWSCognitoIdentityProvider awsCognitoIdentityProvider;
+    private final ChangeSequence changeSequence;
 
-    public UserService(ObjectMapper objectMapper, DynamoDBMapper dynamoDBMapper, AWSCognitoIdentityProvider awsCognitoIdentityProvider) {
+    public UserService(ObjectMapper objectMapper, DynamoDBMapper dynamoDBMapper, AmazonDynamoDB amazonDynamoDB,
+                       AWSCognitoIdentityProvider awsCognitoIdentityProvider) {
         this.objectMapper = objectMapper;
         this.dynamoDBMapper = dynamoDBMapper;
+        this.amazonDynamoDB = amazonDynamoDB;
         this.awsCognitoIdentityProvider = awsCognitoIdentityProvider;
+        this.changeSequence = new ChangeSequence(amazonDynamoDB, "Users");
 
     }
 
@@ -86,15 +110,40 @@ public class UserService {
         userEntity.setUsername(userRequest.getUsername());
         userEntity.setRoles(userRequest.getRoles().stream().distinct().collect(Collectors.toList()));
         userEntity.setStatus("ACTIVE");
+        saveUserEntity(userEntity);
+    }
+
+    private void saveUserEntity(UserEntity userEntity) {
+        userEntity.setChangeFeed(ChangeFeed.shardOf(userEntity.getUsername()));
+        userEntity.setChangeSeq(changeSequence.next());
+        userEntity.setChangedAt(System.currentTimeMillis());
         dynamoDBMapper.save(userEntity);
     }
 
-    public APIGatewayV2HTTPResponse getAllUsers() throws JsonProcessingException {
-        var userEntities = getUsers();
-        var output = objectMapper.writeValueAsString(userEntities);
+    public APIGatewayV2HTTPResponse getAllUsers(APIGatewayV2HTTPEvent event) throws JsonProcessingException {
+        var since = LambdaUtil.getQueryParameter(event, "since");
+        String output;
+        int statusCode = 200;
+
+        if (null == since) {
+            output = objectMapper.writeValueAsString(getUsers());
+        } else if (!since.matches("\\d+")) {
+            output = String.format("{ \"message\": \"%s\" }", "Invalid change sequence " + since);
+            statusCode = 400;
+        } else {
+            var sinceSeq = Long.parseLong(since);
+            var page = ChangeFeed.changedSince(dynamoDBMapper, UserEntity.class, UserEntity.CHANGE_FEED_INDEX,
+                    sinceSeq, UserEntity::getChangeSeq);
+            Map<String, Object> delta = new LinkedHashMap<>();
+            delta.put("sequence", ChangeFeed.cursor(page.getItems(), UserEntity::getChangeSeq, UserEntity::getChangedAt,
+                    sinceSeq, System.currentTimeMillis()));
+            delta.put("hasMore", page.hasMore());
+            delta.put("items", page.getItems());
+            output = objectMapper.writeValueAsString(delta);
+        }
         APIGatewayV2HTTPResponse response = new APIGatewayV2HTTPResponse();
         response.setBody(output);
-        response.setStatusCode(200);
+        response.setStatusCode(statusCode);
         return response;
 
     }
@@ -133,7 +182,7 @@ public class UserService {
                 existingRoles.addAll(roleRequest);
 
                 userEntity.setRoles(existingRoles.stream().distinct().collect(Collectors.toList()));
-                dynamoDBMapper.save(userEntity);
+                saveUserEntity(userEntity);
             }
         }
         APIGatewayV2HTTPResponse response = new APIGatewayV2HTTPResponse();
@@ -173,7 +222,7 @@ public class UserService {
             suspendUserInCognito(username);
             var userEntity = userEntityOptional.get();
             userEntity.setStatus("SUSPENDED");
-            dynamoDBMapper.save(userEntity);
+            saveUserEntity(userEntity);
 
         }
         APIGatewayV2HTTPResponse response = new APIGatewayV2HTTPResponse();
@@ -189,4 +238,236 @@ public class UserService {
         awsCognitoIdentityProvider.adminDisableUser(adminDisableUserRequest);
     }
 
+    public APIGatewayV2HTTPResponse bulkSuspend(APIGatewayV2HTTPEvent event) throws JsonProcessingException {
+        var bulkRequest = objectMapper.readValue(event.getBody(), BulkUserRequest.class);
+        if (LambdaUtil.isEmptyCollection(bulkRequest.getUsernames()) && null == bulkRequest.getRole()) {
+            APIGatewayV2HTTPResponse response = new APIGatewayV2HTTPResponse();
+            response.setBody(String.format("{ \"message\": \"%s\" }", "usernames or role is required"));
+            response.setStatusCode(400);
+            return response;
+        }
+        var rateLimiter = new RateLimiter(LambdaUtil.clamp(bulkRequest.getRequestsPerSecond(),
+                MAX_COGNITO_REQUESTS_PER_SECOND, MAX_COGNITO_REQUESTS_PER_SECOND));
+        return runBulk(bulkRequest, bulkRequest.getRole(), userEntity -> {
+            if ("SUSPENDED".equals(userEntity.getStatus())) {
+                return false;
+            }
+            suspendUserInCognito(userEntity.getUsername(), rateLimiter);
+            userEntity.setStatus("SUSPENDED");
+            return true;
+        });
+    }
+
+    public APIGatewayV2HTTPResponse bulkRevokeRole(APIGatewayV2HTTPEvent event) throws JsonProcessingException {
+        var pathParams = event.getPathParameters();
+        var roleName = pathParams.get("roleName");
+        var body = event.getBody();
+        var bulkRequest = null == body || body.isBlank() ? new BulkUserRequest() : objectMapper.readValue(body, BulkUserRequest.class);
+        return runBulk(bulkRequest, roleName, userEntity -> {
+            var roles = userEntity.getRoles();
+            if (LambdaUtil.isEmptyCollection(roles) || !roles.contains(roleName)) {
+                return false;
+            }
+            userEntity.setRoles(roles.stream().filter(role -> !role.equals(roleName)).collect(Collectors.toList()));
+            return true;
+        });
+    }
+
+    /**
+     * Applies the action to the requested usernames, or to every holder of the role when none are given, one chunk
+     * at a time: the chunk is loaded, the action runs on a bounded worker pool, then each changed user is updated.
+     * The action returns whether the user changed and must be saved.
+     * <p>
+     * No user is started once the time budget is spent. The call then answers 202 with the results so far and a
+     * cursor at the first user not started; the same request sent again with that cursor carries on from there.
+     * The last call answers 200.
+     */
+    private APIGatewayV2HTTPResponse runBulk(BulkUserRequest bulkRequest, String roleName, Predicate<UserEntity> action)
+            throws JsonProcessingException {
+        var deadline = System.currentTimeMillis()
+                + 1000L * LambdaUtil.clamp(bulkRequest.getMaxSeconds(), MAX_BULK_SECONDS, MAX_BULK_SECONDS);
+        var concurrency = LambdaUtil.clamp(bulkRequest.getConcurrency(), DEFAULT_BULK_CONCURRENCY, MAX_BULK_CONCURRENCY);
+        var workers = Executors.newFixedThreadPool(concurrency);
+        var results = new BulkResults();
+        String cursor = bulkRequest.getCursor();
+        try {
+            if (!LambdaUtil.isEmptyCollection(bulkRequest.getUsernames())) {
+                var usernames = bulkRequest.getUsernames().stream().distinct().collect(Collectors.toList());
+                var from = null == cursor ? 0 : Integer.parseInt(cursor);
+                do {
+                    var chunk = usernames.subList(Math.min(from, usernames.size()), Math.min(from + BULK_CHUNK_SIZE, usernames.size()));
+                    var userEntities = loadUsers(chunk);
+                    var found = chunk.stream().filter(userEntities::containsKey).map(userEntities::get).collect(Collectors.toList());
+                    var attempted = processChunk(found, action, workers, concurrency, deadline, results);
+                    var done = attempted == found.size() ? chunk.size() : chunk.indexOf(found.get(attempted).getUsername());
+                    chunk.subList(0, done).stream()
+                            .filter(username -> !userEntities.containsKey(username))
+                            .forEach(username -> results.add(username, "NOT_FOUND", null));
+                    from += done;
+                    cursor = from < usernames.size() ? String.valueOf(from) : null;
+                } while (null != cursor && System.currentTimeMillis() < deadline);
+            } else {
+                do {
+                    var page = scanUsersWithRole(roleName, cursor);
+                    var attempted = processChunk(page.getResults(), action, workers, concurrency, deadline, results);
+                    if (attempted == page.getResults().size()) {
+                        cursor = null == page.getLastEvaluatedKey() ? null : page.getLastEvaluatedKey().get("username").getS();
+                    } else if (attempted > 0) {
+                        cursor = page.getResults().get(attempted - 1).getUsername();
+                    }
+                } while (null != cursor && System.currentTimeMillis() < deadline);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("cursor", cursor);
+        summary.put("total", results.size());
+        summary.put("counts", results.counts());
+        summary.put("results", results.getResults());
+        APIGatewayV2HTTPResponse response = new APIGatewayV2HTTPResponse();
+        response.setBody(objectMapper.writeValueAsString(summary));
+        response.setStatusCode(null == cursor ? 200 : 202);
+        return response;
+    }
+
+    /**
+     * @return how many of the users, from the first, were attempted before the time budget ran out
+     */
+    private int processChunk(List<UserEntity> userEntities, Predicate<UserEntity> action, ExecutorService workers,
+                             int concurrency, long deadline, BulkResults results) {
+        if (userEntities.isEmpty()) {
+            return 0;
+        }
+        var outcomes = BulkResults.runUntil(userEntities, action, workers, concurrency, System::currentTimeMillis, deadline);
+        var changedUsers = results.collect(userEntities.subList(0, outcomes.size()), outcomes);
+        if (changedUsers.isEmpty()) {
+            return outcomes.size();
+        }
+
+        var changeSeq = changeSequence.next();
+        var changedAt = System.currentTimeMillis();
+        Map<String, String> unsaved = new HashMap<>();
+        for (UserEntity userEntity : changedUsers) {
+            var loadedSeq = userEntity.getChangeSeq();
+            userEntity.setChangeFeed(ChangeFeed.shardOf(userEntity.getUsername()));
+            userEntity.setChangeSeq(changeSeq);
+            userEntity.setChangedAt(changedAt);
+            try {
+                updateChangedUser(userEntity, loadedSeq);
+            } catch (ConditionalCheckFailedException e) {
+                unsaved.put(userEntity.getUsername(), "changed by another request while processing, retry");
+            } catch (RuntimeException e) {
+                unsaved.put(userEntity.getUsername(), e.getMessage());
+            }
+        }
+        results.saved(changedUsers, unsaved);
+        return outcomes.size();
+    }
+
+    /**
+     * Writes only the attributes a bulk action changes, and only while the user still has the change sequence it
+     * was loaded with, so a role assignment, suspension or import that landed meanwhile is not overwritten.
+     */
+    private void updateChangedUser(UserEntity userEntity, Long loadedSeq) {
+        Map<String, String> names = Map.of("#username", "username", "#roles", "roles", "#status", "status",
+                "#changeFeed", "changeFeed", "#changeSeq", "changeSeq", "#changedAt", "changedAt");
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":changeFeed", new AttributeValue(userEntity.getChangeFeed()));
+        values.put(":changeSeq", new AttributeValue().withN(String.valueOf(userEntity.getChangeSeq())));
+        values.put(":changedAt", new AttributeValue().withN(String.valueOf(userEntity.getChangedAt())));
+        List<String> sets = new ArrayList<>(List.of("#changeFeed = :changeFeed", "#changeSeq = :changeSeq",
+                "#changedAt = :changedAt"));
+        List<String> removes = new ArrayList<>();
+        if (null == userEntity.getRoles()) {
+            removes.add("#roles");
+        } else {
+            sets.add("#roles = :roles");
+            values.put(":roles", new AttributeValue().withL(userEntity.getRoles().stream()
+                    .map(AttributeValue::new)
+                    .collect(Collectors.toList())));
+        }
+        if (null == userEntity.getStatus()) {
+            removes.add("#status");
+        } else {
+            sets.add("#status = :status");
+            values.put(":status", new AttributeValue(userEntity.getStatus()));
+        }
+        var updateExpression = "SET " + String.join(", ", sets)
+                + (removes.isEmpty() ? "" : " REMOVE " + String.join(", ", removes));
+        var conditionExpression = "attribute_exists(#username) AND ";
+        if (null == loadedSeq) {
+            conditionExpression += "attribute_not_exists(#changeSeq)";
+        } else {
+            conditionExpression += "#changeSeq = :loadedSeq";
+            values.put(":loadedSeq", new AttributeValue().withN(String.valueOf(loadedSeq)));
+        }
+        amazonDynamoDB.updateItem(new UpdateItemRequest()
+                .withTableName("Users")
+                .withKey(Map.of("username", new AttributeValue(userEntity.getUsername())))
+                .withUpdateExpression(updateExpression)
+                .withConditionExpression(conditionExpression)
+                .withExpressionAttributeNames(names)
+                .withExpressionAttributeValues(values));
+    }
+
+    private Map<String, UserEntity> loadUsers(List<String> usernames) {
+        Map<String, UserEntity> userEntities = new LinkedHashMap<>();
+        if (usernames.isEmpty()) {
+            return userEntities;
+        }
+        List<UserEntity> keys = usernames.stream().map(username -> {
+            var key = new UserEntity();
+            key.setUsername(username);
+            return key;
+        }).collect(Collectors.toList());
+        dynamoDBMapper.batchLoad(keys).values().stream()
+                .flatMap(List::stream)
+                .map(UserEntity.class::cast)
+                .forEach(userEntity -> userEntities.put(userEntity.getUsername(), userEntity));
+        return userEntities;
+    }
+
+    private ScanResultPage<UserEntity> scanUsersWithRole(String roleName, String cursor) {
+        Map<String, AttributeValue> expressionAttributeValuesMap = new HashMap<>();
+        expressionAttributeValuesMap.put(":roleName", new AttributeValue().withS(roleName));
+        Map<String, String> expressionAttributeNames = new HashMap<>();
+        expressionAttributeNames.put("#roles", "roles");
+        DynamoDBScanExpression scanExpression = new DynamoDBScanExpression()
+                .withFilterExpression("contains(#roles, :roleName)")
+                .withExpressionAttributeNames(expressionAttributeNames)
+                .withExpressionAttributeValues(expressionAttributeValuesMap)
+                .withLimit(BULK_CHUNK_SIZE);
+        if (null != cursor) {
+            scanExpression.setExclusiveStartKey(Map.of("username", new AttributeValue(cursor)));
+        }
+        return dynamoDBMapper.scanPage(UserEntity.class, scanExpression);
+    }
+
+    /**
+     * Holds to the caller's rate and to the limit shared by every request in this container, and backs off when
+     * Cognito throttles anyway.
+     */
+    private void suspendUserInCognito(String username, RateLimiter rateLimiter) {
+        for (int attempt = 1; ; attempt++) {
+            rateLimiter.acquire(1);
+            COGNITO_RATE_LIMITER.acquire(1);
+            try {
+                suspendUserInCognito(username);
+                return;
+            } catch (TooManyRequestsException e) {
+                if (attempt == MAX_COGNITO_ATTEMPTS) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(200L * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
 }
@@ -0,0 +1,222 @@
+package com.quixteam.usersapi.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads UTF-8 lines from a gzip stream of one or more members and tracks where a later reader can restart: the
+ * compressed offset of the last member that began on a line boundary, and the lines read since. Opening the object
+ * at that offset and skipping those lines resumes without decompressing anything before it. Files written as many
+ * small members restart close to where they stopped; a single member file restarts from its beginning.
+ */
+public class GzipLineReader implements Closeable {
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final InputStream in;
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] input = new byte[64 * 1024];
+    private final byte[] output = new byte[64 * 1024];
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private long inputOffset;
+    private int inputPos;
+    private int inputLimit;
+    private int outputPos;
+    private int outputLimit;
+    private boolean inMember;
+    private long restartOffset;
+    private long linesSinceRestart;
+
+    /**
+     * @param in     compressed bytes, starting at a member boundary
+     * @param offset offset of the first byte of {@code in} within the whole object
+     */
+    public GzipLineReader(InputStream in, long offset) {
+        this.in = in;
+        this.inputOffset = offset;
+        this.restartOffset = offset;
+    }
+
+    /**
+     * @return the next line without its terminator, or null at the end of the stream
+     */
+    public String readLine() throws IOException {
+        line.reset();
+        while (true) {
+            if (outputPos == outputLimit && !fill()) {
+                if (line.size() == 0) {
+                    return null;
+                }
+                linesSinceRestart++;
+                return lineText(line.size());
+            }
+            for (int i = outputPos; i < outputLimit; i++) {
+                if (output[i] == '\n') {
+                    line.write(output, outputPos, i - outputPos);
+                    outputPos = i + 1;
+                    linesSinceRestart++;
+                    var length = line.size();
+                    return lineText(length > 0 && line.toByteArray()[length - 1] == '\r' ? length - 1 : length);
+                }
+            }
+            line.write(output, outputPos, outputLimit - outputPos);
+            outputPos = outputLimit;
+        }
+    }
+
+    public long getRestartOffset() {
+        return restartOffset;
+    }
+
+    public long getLinesSinceRestart() {
+        return linesSinceRestart;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    private String lineText(int length) {
+        return new String(line.toByteArray(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Inflates the next chunk of output, moving across member boundaries.
+     *
+     * @return false at the end of the stream
+     */
+    private boolean fill() throws IOException {
+        while (true) {
+            if (!inMember) {
+                var memberOffset = inputOffset + inputPos;
+                var first = readByte();
+                if (first < 0) {
+                    return false;
+                }
+                readHeader(first);
+                if (line.size() == 0) {
+                    restartOffset = memberOffset;
+                    linesSinceRestart = 0;
+                }
+                inflater.reset();
+                crc.reset();
+                inMember = true;
+            }
+            if (inflater.needsInput()) {
+                if (inputPos == inputLimit && !refill()) {
+                    throw new EOFException("Unexpected end of gzip stream");
+                }
+                inflater.setInput(input, inputPos, inputLimit - inputPos);
+            }
+            int inflated;
+            try {
+                inflated = inflater.inflate(output);
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+            inputPos = inputLimit - inflater.getRemaining();
+            if (inflated > 0) {
+                crc.update(output, 0, inflated);
+                outputPos = 0;
+                outputLimit = inflated;
+            }
+            if (inflater.finished()) {
+                readTrailer();
+                inMember = false;
+            } else if (inflater.needsDictionary()) {
+                throw new ZipException("Preset dictionaries are not supported");
+            }
+            if (inflated > 0) {
+                return true;
+            }
+        }
+    }
+
+    private void readHeader(int first) throws IOException {
+        if (first != 0x1f || requireByte() != 0x8b) {
+            throw new ZipException("Not in gzip format");
+        }
+        if (requireByte() != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+        var flags = requireByte();
+        skip(6);
+        if ((flags & FEXTRA) != 0) {
+            skip(requireByte() | requireByte() << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            while (requireByte() != 0) {
+                // zero terminated file name
+            }
+        }
+        if ((flags & FCOMMENT) != 0) {
+            while (requireByte() != 0) {
+                // zero terminated comment
+            }
+        }
+        if ((flags & FHCRC) != 0) {
+            skip(2);
+        }
+    }
+
+    private void readTrailer() throws IOException {
+        var expectedCrc = readInt();
+        var expectedSize = readInt();
+        if (expectedCrc != crc.getValue() || expectedSize != (inflater.getBytesWritten() & 0xffffffffL)) {
+            throw new ZipException("Corrupt gzip trailer");
+        }
+    }
+
+    private long readInt() throws IOException {
+        return requireByte() | requireByte() << 8 | requireByte() << 16 | (long) requireByte() << 24;
+    }
+
+    private void skip(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            requireByte();
+        }
+    }
+
+    private int requireByte() throws IOException {
+        var value = readByte();
+        if (value < 0) {
+            throw new EOFException("Unexpected end of gzip stream");
+        }
+        return value;
+    }
+
+    private int readByte() throws IOException {
+        if (inputPos == inputLimit && !refill()) {
+            return -1;
+        }
+        return input[inputPos++] & 0xff;
+    }
+
+    private boolean refill() throws IOException {
+        inputOffset += inputLimit;
+        inputPos = 0;
+        inputLimit = 0;
+        int read;
+        do {
+            read = in.read(input);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        inputLimit = read;
+        return true;
+    }
+}
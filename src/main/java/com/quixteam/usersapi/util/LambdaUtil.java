@@ -1,5 +1,7 @@
 package com.quixteam.usersapi.util;
 
+import com.amazonaws.services.lambda.runtime.events.APIGatewayV2HTTPEvent;
+
 import java.util.Collection;
 
 public class LambdaUtil {
@@ -7,4 +9,16 @@ public class LambdaUtil {
         return null == collection || collection.size() == 0;
     }
 
+    public static String getQueryParameter(APIGatewayV2HTTPEvent event, String name) {
+        var queryParams = event.getQueryStringParameters();
+        return null == queryParams ? null : queryParams.get(name);
+    }
+
+    /**
+     * The default when the client leaves the value out, otherwise the value kept between 1 and the maximum.
+     */
+    public static int clamp(Integer requested, int defaultValue, int max) {
+        return null == requested ? defaultValue : Math.max(1, Math.min(requested, max));
+    }
+
 }
@@ -0,0 +1,55 @@
+package com.quixteam.usersapi.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket shared by callers that must stay under a downstream rate. Callers taking more permits than are
+ * available go into debt and sleep it off, so later callers wait their turn behind them.
+ */
+public class RateLimiter {
+    private final double permitsPerSecond;
+    private final LongSupplier nanoClock;
+    private final LongConsumer nanoSleeper;
+    private double available;
+    private long refilledAt;
+
+    public RateLimiter(double permitsPerSecond) {
+        this(permitsPerSecond, System::nanoTime, RateLimiter::sleep);
+    }
+
+    RateLimiter(double permitsPerSecond, LongSupplier nanoClock, LongConsumer nanoSleeper) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive " + permitsPerSecond);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.nanoClock = nanoClock;
+        this.nanoSleeper = nanoSleeper;
+        this.available = Math.max(1, permitsPerSecond);
+        this.refilledAt = nanoClock.getAsLong();
+    }
+
+    public void acquire(int permits) {
+        long waitNanos;
+        synchronized (this) {
+            var now = nanoClock.getAsLong();
+            available = Math.min(Math.max(1, permitsPerSecond),
+                    available + (now - refilledAt) / 1_000_000_000d * permitsPerSecond);
+            refilledAt = now;
+            available -= permits;
+            waitNanos = available >= 0 ? 0 : (long) (-available / permitsPerSecond * 1_000_000_000d);
+        }
+        if (waitNanos > 0) {
+            nanoSleeper.accept(waitNanos);
+        }
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.quixteam.usersapi.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class ApiGatewayHttpHandlerTest {
+
+  @Test
+  public void matchesLiteralRoute() {
+    var route = new ApiGatewayHttpHandler.RouteTemplate("GET /roles");
+    assertEquals(Map.of(), route.match("GET", ApiGatewayHttpHandler.splitPath("/roles")));
+  }
+
+  @Test
+  public void extractsPathParameters() {
+    var route = new ApiGatewayHttpHandler.RouteTemplate("DELETE /roles/{roleName}/modules/{moduleName}");
+    var parameters = route.match("DELETE", ApiGatewayHttpHandler.splitPath("/roles/admin/modules/billing"));
+    assertEquals(Map.of("roleName", "admin", "moduleName", "billing"), parameters);
+  }
+
+  @Test
+  public void methodIsCaseInsensitive() {
+    var route = new ApiGatewayHttpHandler.RouteTemplate("POST /users");
+    assertEquals(Map.of(), route.match("post", ApiGatewayHttpHandler.splitPath("/users")));
+  }
+
+  @Test
+  public void rejectsOtherMethodLiteralOrLength() {
+    var route = new ApiGatewayHttpHandler.RouteTemplate("GET /roles/{roleName}");
+    assertNull(route.match("PUT", ApiGatewayHttpHandler.splitPath("/roles/admin")));
+    assertNull(route.match("GET", ApiGatewayHttpHandler.splitPath("/users/admin")));
+    assertNull(route.match("GET", ApiGatewayHttpHandler.splitPath("/roles")));
+    assertNull(route.match("GET", ApiGatewayHttpHandler.splitPath("/roles/admin/modules")));
+  }
+
+  @Test
+  public void splitPathIgnoresSurroundingSlashes() {
+    assertArrayEquals(new String[]{"roles", "admin"}, ApiGatewayHttpHandler.splitPath("/roles/admin/"));
+    assertArrayEquals(new String[0], ApiGatewayHttpHandler.splitPath("/"));
+  }
+
+  @Test
+  public void parseQueryDecodesAndJoinsRepeatedNames() {
+    var parameters = ApiGatewayHttpHandler.parseQuery("since=12&name=a%20b&tag=x&tag=y&flag&&");
+    assertEquals("12", parameters.get("since"));
+    assertEquals("a b", parameters.get("name"));
+    assertEquals("x,y", parameters.get("tag"));
+    assertEquals("", parameters.get("flag"));
+    assertEquals(4, parameters.size());
+  }
+
+  @Test
+  public void parseQueryReturnsNullWithoutQuery() {
+    assertNull(ApiGatewayHttpHandler.parseQuery(null));
+    assertNull(ApiGatewayHttpHandler.parseQuery(""));
+  }
+}
@@ -0,0 +1,48 @@
+package com.quixteam.usersapi.server;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class ContainerServerTest {
+  private static final LambdaLogger NO_LOG = new LambdaLogger() {
+    @Override
+    public void log(String message) {
+    }
+
+    @Override
+    public void log(byte[] message) {
+    }
+  };
+
+  @Test
+  public void fixedExecutorRejectsInsteadOfQueueing() throws InterruptedException {
+    var workers = ContainerServer.workerExecutor("fixed", 1, NO_LOG);
+    var release = new CountDownLatch(1);
+    try {
+      workers.execute(() -> {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      try {
+        workers.execute(() -> { });
+        fail("second task should be rejected while the only worker is busy");
+      } catch (RejectedExecutionException expected) {
+        // the handler turns this into a 503
+      }
+    } finally {
+      release.countDown();
+      workers.shutdown();
+      assertTrue(workers.awaitTermination(5, TimeUnit.SECONDS));
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package com.quixteam.usersapi.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.quixteam.usersapi.entity.UserEntity;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class BulkResultsTest {
+  private final BulkResults results = new BulkResults();
+
+  private UserEntity user(String username) {
+    var userEntity = new UserEntity();
+    userEntity.setUsername(username);
+    return userEntity;
+  }
+
+  private Future<Boolean> failed(String message) {
+    var future = new CompletableFuture<Boolean>();
+    future.completeExceptionally(new IllegalStateException(message));
+    return future;
+  }
+
+  @Test
+  public void collectKeepsChangedUsersAndRecordsTheRest() {
+    var changed = user("changed");
+    var changedUsers = results.collect(List.of(changed, user("same"), user("broken")),
+        List.of(CompletableFuture.completedFuture(true), CompletableFuture.completedFuture(false), failed("throttled")));
+
+    assertEquals(List.of(changed), changedUsers);
+    assertEquals(Map.of("status", "UNCHANGED", "username", "same"), results.getResults().get(0));
+    assertEquals(Map.of("status", "FAILED", "username", "broken", "message", "throttled"), results.getResults().get(1));
+  }
+
+  @Test
+  public void savedSeparatesUnsavedUsers() {
+    results.saved(List.of(user("a"), user("b")), Map.of("b", "capacity"));
+
+    assertEquals(Map.of("status", "UPDATED", "username", "a"), results.getResults().get(0));
+    assertEquals(Map.of("status", "FAILED", "username", "b", "message", "Not saved: capacity"), results.getResults().get(1));
+  }
+
+  @Test
+  public void countsEveryStatus() {
+    results.add("missing", "NOT_FOUND", null);
+    results.collect(List.of(user("same"), user("broken")),
+        List.of(CompletableFuture.completedFuture(false), failed("boom")));
+    results.saved(List.of(user("a"), user("b")), Map.of("b", "capacity"));
+
+    assertEquals(5, results.size());
+    assertEquals(Map.of("FAILED", 2L, "NOT_FOUND", 1L, "UNCHANGED", 1L, "UPDATED", 1L), results.counts());
+  }
+
+  @Test
+  public void runUntilStopsHandingOutUsersAtTheDeadline() {
+    var workers = Executors.newFixedThreadPool(1);
+    List<String> actioned = Collections.synchronizedList(new ArrayList<>());
+    var clock = new AtomicLong();
+    try {
+      var outcomes = BulkResults.runUntil(List.of(user("a"), user("b"), user("c"), user("d"), user("e")),
+          userEntity -> actioned.add(userEntity.getUsername()), workers, 1, clock::getAndIncrement, 3);
+
+      assertEquals(3, outcomes.size());
+      assertEquals(List.of("a", "b", "c"), actioned);
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+
+  @Test
+  public void runUntilAttemptsAPrefixAcrossWorkers() {
+    var workers = Executors.newFixedThreadPool(4);
+    Set<String> actioned = ConcurrentHashMap.newKeySet();
+    var clock = new AtomicLong();
+    var userEntities = IntStream.range(0, 50).mapToObj(i -> user("user-" + i)).collect(Collectors.toList());
+    try {
+      var outcomes = BulkResults.runUntil(userEntities, userEntity -> actioned.add(userEntity.getUsername()),
+          workers, 4, clock::getAndIncrement, 20);
+
+      var prefix = userEntities.subList(0, outcomes.size()).stream().map(UserEntity::getUsername).collect(Collectors.toSet());
+      assertEquals(prefix, actioned);
+      assertTrue(outcomes.size() < userEntities.size());
+      outcomes.forEach(outcome -> assertTrue(outcome.isDone()));
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+
+  @Test
+  public void runUntilRecordsActionFailures() {
+    var workers = Executors.newFixedThreadPool(2);
+    var userEntities = List.of(user("ok"), user("broken"), user("same"));
+    try {
+      var outcomes = BulkResults.runUntil(userEntities, userEntity -> {
+        if ("broken".equals(userEntity.getUsername())) {
+          throw new IllegalStateException("throttled");
+        }
+        return "ok".equals(userEntity.getUsername());
+      }, workers, 2, () -> 0, 1);
+      var changedUsers = results.collect(userEntities.subList(0, outcomes.size()), outcomes);
+
+      assertEquals(List.of(userEntities.get(0)), changedUsers);
+      assertEquals(Map.of("status", "FAILED", "username", "broken", "message", "throttled"), results.getResults().get(0));
+      assertEquals(Map.of("status", "UNCHANGED", "username", "same"), results.getResults().get(1));
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+}
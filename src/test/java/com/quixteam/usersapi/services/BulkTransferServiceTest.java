@@ -0,0 +1,162 @@
+package com.quixteam.usersapi.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quixteam.usersapi.entity.JobCheckpointEntity;
+import com.quixteam.usersapi.entity.RoleEntity;
+import com.quixteam.usersapi.entity.Tombstone;
+import com.quixteam.usersapi.util.GzipLineReader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+public class BulkTransferServiceTest {
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final ByteArrayOutputStream file = new ByteArrayOutputStream();
+  private final List<Long> opened = new ArrayList<>();
+
+  private long member(String... lines) throws IOException {
+    var offset = file.size();
+    try (var gzip = new GZIPOutputStream(file)) {
+      for (String line : lines) {
+        gzip.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    return offset;
+  }
+
+  private GzipLineReader open(JobCheckpointEntity checkpoint) throws IOException {
+    return BulkTransferService.openLines(offset -> {
+      opened.add(offset);
+      var bytes = file.toByteArray();
+      return new ByteArrayInputStream(Arrays.copyOfRange(bytes, (int) offset, bytes.length));
+    }, checkpoint);
+  }
+
+  private static JobCheckpointEntity checkpoint() {
+    var checkpoint = new JobCheckpointEntity();
+    checkpoint.setResumeOffset(0L);
+    checkpoint.setResumeLine(0L);
+    checkpoint.setLinesProcessed(0L);
+    return checkpoint;
+  }
+
+  private static String role(String name, String... childRoles) {
+    return "{\"role\":{\"name\":\"" + name + "\",\"childRoles\":" + names(childRoles) + "}}";
+  }
+
+  private static String user(String username, String... roles) {
+    return "{\"user\":{\"username\":\"" + username + "\",\"roles\":" + names(roles) + "}}";
+  }
+
+  private static String names(String... names) {
+    StringJoiner joiner = new StringJoiner(",", "[", "]");
+    Arrays.stream(names).forEach(name -> joiner.add("\"" + name + "\""));
+    return joiner.toString();
+  }
+
+  private static Map<String, RoleEntity> stored(Collection<String> roleNames, String... storedNames) {
+    Map<String, RoleEntity> found = new HashMap<>();
+    Arrays.stream(storedNames).filter(roleNames::contains).forEach(name -> found.put(name, new RoleEntity()));
+    return found;
+  }
+
+  @Test
+  public void resumesFromTheMemberItStoppedIn() throws IOException {
+    member(role("a"), role("b"));
+    var second = member(role("c"), role("d", "a"), user("u", "e"));
+    var third = member(role("e"));
+    var checkpoint = checkpoint();
+    var state = new BulkTransferService.ValidationState();
+    long[] now = {0};
+
+    try (var reader = open(checkpoint)) {
+      assertFalse(BulkTransferService.validateLines(objectMapper, reader, checkpoint, state, () -> now[0]++, 2));
+    }
+    assertEquals(4L, (long) checkpoint.getLinesProcessed());
+    assertEquals(second, (long) checkpoint.getResumeOffset());
+    assertEquals(2L, (long) checkpoint.getResumeLine());
+
+    var resumedState = objectMapper.readValue(objectMapper.writeValueAsString(state), BulkTransferService.ValidationState.class);
+    try (var reader = open(checkpoint)) {
+      assertTrue(BulkTransferService.validateLines(objectMapper, reader, checkpoint, resumedState, () -> 0, 2));
+    }
+    assertEquals(List.of(0L, second), opened);
+    assertEquals(6L, (long) checkpoint.getLinesProcessed());
+    assertEquals(third, (long) checkpoint.getResumeOffset());
+    assertEquals(Set.of("a", "b", "c", "d", "e"), resumedState.getRoleNames());
+    assertEquals(Map.of(), resumedState.getPendingReferences());
+    assertEquals(List.of(), resumedState.getErrors());
+  }
+
+  @Test
+  public void reportsRecordsThatCannotBeImported() throws IOException {
+    member("{not json", "", "{\"role\":{\"childRoles\":[]}}", user("u", "missing"), role("r", "missing", "later"),
+        role("later"));
+    var checkpoint = checkpoint();
+    var state = new BulkTransferService.ValidationState();
+
+    try (var reader = open(checkpoint)) {
+      assertTrue(BulkTransferService.validateLines(objectMapper, reader, checkpoint, state, () -> 0, 1));
+    }
+    BulkTransferService.resolvePending(state, roleNames -> stored(roleNames));
+
+    assertEquals(3, state.getErrors().size());
+    assertTrue(state.getErrors().get(0).startsWith("line 1: unreadable record "));
+    assertEquals("line 3: record has neither a named role nor a user", state.getErrors().get(1));
+    assertEquals("line 4: unknown role missing", state.getErrors().get(2));
+  }
+
+  @Test
+  public void referencesToStoredRolesAreResolved() {
+    var state = new BulkTransferService.ValidationState();
+    BulkTransferService.validateRecord(objectMapper, state, user("u", "stored", "gone"), 1);
+    BulkTransferService.validateRecord(objectMapper, state, role("r", "stored"), 2);
+
+    BulkTransferService.resolvePending(state, roleNames -> stored(roleNames, "stored"));
+
+    assertEquals(List.of("line 1: unknown role gone"), state.getErrors());
+  }
+
+  @Test
+  public void nothingPendingLoadsNothing() {
+    var state = new BulkTransferService.ValidationState();
+    BulkTransferService.validateRecord(objectMapper, state, role("r"), 1);
+    BulkTransferService.validateRecord(objectMapper, state, user("u", "r"), 2);
+
+    BulkTransferService.resolvePending(state, roleNames -> {
+      throw new AssertionError("loaded " + roleNames);
+    });
+
+    assertEquals(List.of(), state.getErrors());
+  }
+
+  @Test
+  public void importedRolesDropForeignFeedState() {
+    var roleEntity = new RoleEntity();
+    roleEntity.setName("r");
+    roleEntity.setEffectivePermissions(List.of());
+    roleEntity.setGeneration(4L);
+    roleEntity.setTombstones(List.of(new Tombstone()));
+    roleEntity.setTombstonesPrunedThrough(90L);
+
+    BulkTransferService.stampImportedRole(roleEntity, 12L, 1000L);
+
+    assertNull(roleEntity.getEffectivePermissions());
+    assertNull(roleEntity.getGeneration());
+    assertNull(roleEntity.getTombstones());
+    assertNull(roleEntity.getTombstonesPrunedThrough());
+    assertEquals(ChangeFeed.shardOf("r"), roleEntity.getChangeFeed());
+    assertEquals(12L, (long) roleEntity.getChangeSeq());
+    assertEquals(1000L, (long) roleEntity.getChangedAt());
+  }
+}
@@ -0,0 +1,91 @@
+package com.quixteam.usersapi.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.quixteam.usersapi.entity.UserEntity;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class ChangeFeedTest {
+  private static final long NOW = 1_000_000_000L;
+
+  @Test
+  public void cursorStopsBeforeUnsettledItems() {
+    var settled = user("a", 5, NOW - ChangeFeed.SETTLE_MILLIS - 1);
+    var recent = user("b", 7, NOW - 10);
+
+    assertEquals(5L, ChangeFeed.cursor(List.of(settled, recent), UserEntity::getChangeSeq, UserEntity::getChangedAt, 3, NOW));
+  }
+
+  @Test
+  public void cursorStaysWhenNothingSettled() {
+    var recent = user("b", 7, NOW);
+
+    assertEquals(3L, ChangeFeed.cursor(List.of(recent), UserEntity::getChangeSeq, UserEntity::getChangedAt, 3, NOW));
+    assertEquals(3L, ChangeFeed.cursor(List.of(), UserEntity::getChangeSeq, UserEntity::getChangedAt, 3, NOW));
+  }
+
+  @Test
+  public void undatedItemsCountAsSettled() {
+    var legacy = user("a", 9, null);
+
+    assertEquals(9L, ChangeFeed.cursor(List.of(legacy), UserEntity::getChangeSeq, UserEntity::getChangedAt, 3, NOW));
+  }
+
+  @Test
+  public void mergeOrdersAllShardsWhenEachIsComplete() {
+    var page = ChangeFeed.merge(List.of(List.of(user("a", 4, NOW), user("b", 9, NOW)), List.of(user("c", 6, NOW))),
+        List.of(false, false), UserEntity::getChangeSeq, 10);
+
+    assertEquals(List.of(4L, 6L, 9L), sequences(page.getItems()));
+    assertFalse(page.hasMore());
+  }
+
+  @Test
+  public void mergeStopsAtTheEndOfAShardWithMore() {
+    var page = ChangeFeed.merge(List.of(List.of(user("a", 4, NOW), user("b", 5, NOW)), List.of(user("c", 3, NOW), user("d", 8, NOW))),
+        List.of(true, false), UserEntity::getChangeSeq, 10);
+
+    assertEquals(List.of(3L, 4L, 5L), sequences(page.getItems()));
+    assertTrue(page.hasMore());
+  }
+
+  @Test
+  public void mergeKeepsTheLowestUpToTheLimit() {
+    var page = ChangeFeed.merge(List.of(List.of(user("a", 2, NOW), user("b", 7, NOW)), List.of(user("c", 5, NOW))),
+        List.of(false, false), UserEntity::getChangeSeq, 2);
+
+    assertEquals(List.of(2L, 5L), sequences(page.getItems()));
+    assertTrue(page.hasMore());
+  }
+
+  @Test
+  public void shardsAreStableAndSpread() {
+    Set<String> shards = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      var shard = ChangeFeed.shardOf("user-" + i);
+      assertEquals(shard, ChangeFeed.shardOf("user-" + i));
+      assertTrue(shard.startsWith(ChangeFeed.SHARD_PREFIX));
+      shards.add(shard);
+    }
+    assertEquals(ChangeFeed.SHARDS, shards.size());
+  }
+
+  private static List<Long> sequences(List<UserEntity> users) {
+    return users.stream().map(UserEntity::getChangeSeq).collect(Collectors.toList());
+  }
+
+  private static UserEntity user(String username, long changeSeq, Long changedAt) {
+    var user = new UserEntity();
+    user.setUsername(username);
+    user.setChangeSeq(changeSeq);
+    user.setChangedAt(changedAt);
+    return user;
+  }
+}
@@ -0,0 +1,41 @@
+package com.quixteam.usersapi.services;
+
+import static org.junit.Assert.assertEquals;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class ChangeSequenceTest {
+
+  @Test
+  public void allocatesWithOneAtomicAdd() {
+    List<UpdateItemRequest> requests = new ArrayList<>();
+    var amazonDynamoDB = (AmazonDynamoDB) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[]{AmazonDynamoDB.class}, (proxy, method, args) -> {
+          if (!"updateItem".equals(method.getName())) {
+            throw new UnsupportedOperationException(method.getName());
+          }
+          requests.add((UpdateItemRequest) args[0]);
+          return new UpdateItemResult().withAttributes(Map.of("value", new AttributeValue().withN("42")));
+        });
+
+    assertEquals(42L, new ChangeSequence(amazonDynamoDB, "Roles").next());
+
+    assertEquals(1, requests.size());
+    var request = requests.get(0);
+    assertEquals("ChangeSequences", request.getTableName());
+    assertEquals("Roles", request.getKey().get("name").getS());
+    assertEquals("ADD #value :one", request.getUpdateExpression());
+    assertEquals("1", request.getExpressionAttributeValues().get(":one").getN());
+    assertEquals(ReturnValue.UPDATED_NEW.toString(), request.getReturnValues());
+  }
+}
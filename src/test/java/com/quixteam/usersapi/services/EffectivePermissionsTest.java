@@ -0,0 +1,145 @@
+package com.quixteam.usersapi.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.quixteam.usersapi.entity.Module;
+import com.quixteam.usersapi.entity.RoleEntity;
+import org.junit.Test;
+
+import java.util.*;
+
+public class EffectivePermissionsTest {
+  private final Map<String, RoleEntity> table = new HashMap<>();
+  private final List<Collection<String>> loads = new ArrayList<>();
+  private final EffectivePermissions effectivePermissions = new EffectivePermissions(names -> {
+    loads.add(new ArrayList<>(names));
+    Map<String, RoleEntity> found = new HashMap<>();
+    names.stream().filter(table::containsKey).forEach(name -> found.put(name, table.get(name)));
+    return found;
+  });
+
+  @Test
+  public void mergesChildrenBeforeParents() {
+    var leaf = role("leaf", List.of(), module("billing", "read"));
+    var middle = role("middle", List.of("leaf"), module("billing", "write"));
+    var top = role("top", List.of("middle", "leaf"), module("users", "read"));
+
+    var views = effectivePermissions.compute(List.of(top, middle, leaf), false);
+
+    assertEquals(Map.of("billing", Set.of("read")), flatten(views.get("leaf")));
+    assertEquals(Map.of("billing", Set.of("read", "write")), flatten(views.get("middle")));
+    assertEquals(Map.of("users", Set.of("read"), "billing", Set.of("read", "write")), flatten(views.get("top")));
+  }
+
+  @Test
+  public void cycleMembersShareTheirUnion() {
+    var a = role("a", List.of("b"), module("a", "x"));
+    var b = role("b", List.of("a"), module("b", "y"));
+    var above = role("above", List.of("a"));
+
+    var views = effectivePermissions.compute(List.of(a, b, above), false);
+
+    var union = Map.of("a", Set.of("x"), "b", Set.of("y"));
+    assertEquals(union, flatten(views.get("a")));
+    assertEquals(union, flatten(views.get("b")));
+    assertEquals(union, flatten(views.get("above")));
+  }
+
+  @Test
+  public void cycleDropsPermissionsOnlyItsStaleViewsHeld() {
+    var a = role("a", List.of("b"));
+    var b = role("b", List.of("a"), module("b", "y"));
+    // Stored views still grant a module that was removed from a.
+    a.setEffectivePermissions(List.of(module("gone", "z"), module("b", "y")));
+    b.setEffectivePermissions(List.of(module("gone", "z"), module("b", "y")));
+
+    var views = effectivePermissions.compute(List.of(a, b), false);
+
+    assertEquals(Map.of("b", Set.of("y")), flatten(views.get("a")));
+    assertEquals(Map.of("b", Set.of("y")), flatten(views.get("b")));
+  }
+
+  @Test
+  public void selfReferenceConverges() {
+    var self = role("self", List.of("self"), module("m", "p"));
+
+    var views = effectivePermissions.compute(List.of(self), false);
+
+    assertEquals(Map.of("m", Set.of("p")), flatten(views.get("self")));
+  }
+
+  @Test
+  public void usesStoredViewOfMaterializedChild() {
+    var child = role("child", List.of("grandchild"), module("own", "p"));
+    child.setEffectivePermissions(List.of(module("stored", "q")));
+    table.put("child", child);
+    var parent = role("parent", List.of("child"));
+
+    var views = effectivePermissions.compute(List.of(parent), false);
+
+    assertEquals(Map.of("stored", Set.of("q")), flatten(views.get("parent")));
+    assertEquals(1, loads.size());
+    assertFalse(views.containsKey("child"));
+  }
+
+  @Test
+  public void computesStaleChildrenInMemory() {
+    table.put("child", role("child", List.of("grandchild"), module("own", "p")));
+    var grandchild = role("grandchild", List.of());
+    grandchild.setEffectivePermissions(List.of(module("deep", "r")));
+    table.put("grandchild", grandchild);
+    var parent = role("parent", List.of("child"));
+
+    var views = effectivePermissions.compute(List.of(parent), false);
+
+    assertEquals(Map.of("own", Set.of("p"), "deep", Set.of("r")), flatten(views.get("parent")));
+    assertTrue(views.containsKey("child"));
+  }
+
+  @Test
+  public void recomputeChildrenIgnoresStoredViews() {
+    var child = role("child", List.of(), module("own", "p"));
+    child.setEffectivePermissions(List.of(module("stale", "q")));
+    table.put("child", child);
+    var parent = role("parent", List.of("child"));
+
+    var views = effectivePermissions.compute(List.of(parent), true);
+
+    assertEquals(Map.of("own", Set.of("p")), flatten(views.get("parent")));
+  }
+
+  @Test
+  public void skipsMissingChildrenAndLoadsThemOnce() {
+    var first = role("first", List.of("missing"));
+    var second = role("second", List.of("missing"), module("m", "p"));
+
+    var views = effectivePermissions.compute(List.of(first, second), false);
+
+    assertEquals(Map.of(), flatten(views.get("first")));
+    assertEquals(Map.of("m", Set.of("p")), flatten(views.get("second")));
+    assertEquals(List.of(List.of("missing")), loads);
+  }
+
+  private static RoleEntity role(String name, List<String> childRoles, Module... modules) {
+    var role = new RoleEntity();
+    role.setName(name);
+    role.setChildRoles(childRoles);
+    role.setModules(new ArrayList<>(List.of(modules)));
+    return role;
+  }
+
+  private static Module module(String name, String... permissions) {
+    var module = new Module();
+    module.setName(name);
+    module.setPermissions(new ArrayList<>(List.of(permissions)));
+    return module;
+  }
+
+  private static Map<String, Set<String>> flatten(List<Module> modules) {
+    Map<String, Set<String>> flattened = new HashMap<>();
+    modules.forEach(module -> flattened.put(module.getName(), new HashSet<>(module.getPermissions())));
+    return flattened;
+  }
+}
@@ -0,0 +1,54 @@
+package com.quixteam.usersapi.services;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.*;
+
+public class RoleParentIndexTest {
+  private final Map<String, Set<String>> parentsByChild = new HashMap<>();
+  private int loads;
+
+  private Set<String> ancestorsOf(String roleName) {
+    return RoleParentIndex.ancestorsOf(roleName, names -> {
+      loads++;
+      Map<String, Set<String>> found = new HashMap<>();
+      names.stream().filter(parentsByChild::containsKey).forEach(name -> found.put(name, parentsByChild.get(name)));
+      return found;
+    });
+  }
+
+  @Test
+  public void walksEveryLevelOnce() {
+    parentsByChild.put("leaf", Set.of("middle"));
+    parentsByChild.put("middle", Set.of("top"));
+
+    assertEquals(Set.of("middle", "top"), ancestorsOf("leaf"));
+    assertEquals(3, loads);
+  }
+
+  @Test
+  public void diamondVisitsSharedAncestorOnce() {
+    parentsByChild.put("leaf", Set.of("left", "right"));
+    parentsByChild.put("left", Set.of("top"));
+    parentsByChild.put("right", Set.of("top"));
+
+    assertEquals(Set.of("left", "right", "top"), ancestorsOf("leaf"));
+    assertEquals(3, loads);
+  }
+
+  @Test
+  public void cycleStopsAndExcludesTheRole() {
+    parentsByChild.put("a", Set.of("b"));
+    parentsByChild.put("b", Set.of("a", "c"));
+
+    assertEquals(Set.of("b", "c"), ancestorsOf("a"));
+  }
+
+  @Test
+  public void rootHasNoAncestors() {
+    assertEquals(Set.of(), ancestorsOf("root"));
+    assertEquals(1, loads);
+  }
+}
@@ -0,0 +1,74 @@
+package com.quixteam.usersapi.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.quixteam.usersapi.entity.RoleEntity;
+import com.quixteam.usersapi.entity.Tombstone;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class TombstonesTest {
+  private static final long NOW = 10_000_000_000L;
+
+  @Test
+  public void addPrunesExpiredAndRecordsTheirSequence() {
+    var role = new RoleEntity();
+    role.setTombstones(new ArrayList<>(List.of(
+        tombstone("old", 4L, NOW - Tombstones.RETENTION_MILLIS - 1),
+        tombstone("older", 2L, NOW - Tombstones.RETENTION_MILLIS - 5),
+        tombstone("fresh", 6L, NOW - 1))));
+
+    Tombstones.add(role, "billing", List.of("read"), NOW);
+
+    assertEquals(List.of("fresh", "billing"), modules(role));
+    assertEquals(Long.valueOf(4L), role.getTombstonesPrunedThrough());
+    assertEquals(Long.valueOf(NOW), role.getTombstones().get(1).getDeletedAt());
+  }
+
+  @Test
+  public void undatedTombstonesStartTheirRetention() {
+    var role = new RoleEntity();
+    role.setTombstones(new ArrayList<>(List.of(tombstone("legacy", 3L, null))));
+
+    Tombstones.add(role, "billing", null, NOW);
+
+    assertEquals(List.of("legacy", "billing"), modules(role));
+    assertEquals(Long.valueOf(NOW), role.getTombstones().get(0).getDeletedAt());
+    assertNull(role.getTombstonesPrunedThrough());
+  }
+
+  @Test
+  public void resyncOnlyForCursorsBeforeThePrune() {
+    var role = new RoleEntity();
+    role.setTombstonesPrunedThrough(4L);
+
+    assertTrue(Tombstones.resyncRequired(role, 3));
+    assertFalse(Tombstones.resyncRequired(role, 4));
+    assertFalse(Tombstones.resyncRequired(new RoleEntity(), 0));
+  }
+
+  @Test
+  public void sinceKeepsNewerStampedTombstones() {
+    var tombstones = List.of(tombstone("a", 2L, NOW), tombstone("b", 5L, NOW), tombstone("c", null, NOW));
+
+    assertEquals(List.of("b"), Tombstones.since(tombstones, 2).stream().map(Tombstone::getModule).collect(Collectors.toList()));
+  }
+
+  private static Tombstone tombstone(String module, Long changeSeq, Long deletedAt) {
+    var tombstone = new Tombstone();
+    tombstone.setModule(module);
+    tombstone.setChangeSeq(changeSeq);
+    tombstone.setDeletedAt(deletedAt);
+    return tombstone;
+  }
+
+  private static List<String> modules(RoleEntity role) {
+    return role.getTombstones().stream().map(Tombstone::getModule).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,94 @@
+package com.quixteam.usersapi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class GzipLineReaderTest {
+  private final ByteArrayOutputStream file = new ByteArrayOutputStream();
+
+  private long member(String text) throws IOException {
+    var offset = file.size();
+    try (var gzip = new GZIPOutputStream(file)) {
+      gzip.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+    return offset;
+  }
+
+  private GzipLineReader readerFrom(long offset) {
+    var bytes = file.toByteArray();
+    return new GzipLineReader(new ByteArrayInputStream(Arrays.copyOfRange(bytes, (int) offset, bytes.length)), offset);
+  }
+
+  private List<String> rest(GzipLineReader reader) throws IOException {
+    List<String> lines = new ArrayList<>();
+    String line;
+    while (null != (line = reader.readLine())) {
+      lines.add(line);
+    }
+    return lines;
+  }
+
+  @Test
+  public void readsLinesAcrossMembers() throws IOException {
+    member("a\nb\n");
+    member("c\r\nd");
+
+    assertEquals(List.of("a", "b", "c", "d"), rest(readerFrom(0)));
+  }
+
+  @Test
+  public void restartsAtTheMemberItStoppedIn() throws IOException {
+    member("a\nb\n");
+    var second = member("c\nd\ne\n");
+    var reader = readerFrom(0);
+    reader.readLine();
+    reader.readLine();
+    reader.readLine();
+    reader.readLine();
+
+    assertEquals(second, reader.getRestartOffset());
+    assertEquals(2, reader.getLinesSinceRestart());
+
+    var resumed = readerFrom(reader.getRestartOffset());
+    for (long i = 0; i < reader.getLinesSinceRestart(); i++) {
+      resumed.readLine();
+    }
+    assertEquals(List.of("e"), rest(resumed));
+  }
+
+  @Test
+  public void memberStartingMidLineIsNoRestartPoint() throws IOException {
+    member("a\nb");
+    member("c\nd\n");
+    var reader = readerFrom(0);
+
+    assertEquals("a", reader.readLine());
+    assertEquals("bc", reader.readLine());
+    assertEquals(0, reader.getRestartOffset());
+    assertEquals(2, reader.getLinesSinceRestart());
+    assertEquals("d", reader.readLine());
+    assertNull(reader.readLine());
+  }
+
+  @Test
+  public void singleMemberRestartsFromTheStart() throws IOException {
+    member("a\nb\nc\n");
+    var reader = readerFrom(0);
+    reader.readLine();
+    reader.readLine();
+
+    assertEquals(0, reader.getRestartOffset());
+    assertEquals(2, reader.getLinesSinceRestart());
+  }
+}
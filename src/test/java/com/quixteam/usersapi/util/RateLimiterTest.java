@@ -0,0 +1,78 @@
+package com.quixteam.usersapi.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiterTest {
+  private long now = 1_000_000_000L;
+  private final List<Long> sleeps = new ArrayList<>();
+
+  private RateLimiter limiter(double permitsPerSecond) {
+    return new RateLimiter(permitsPerSecond, () -> now, sleeps::add);
+  }
+
+  private static long millis(long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  @Test
+  public void burstUpToOneSecondOfPermitsDoesNotWait() {
+    var rateLimiter = limiter(50);
+
+    rateLimiter.acquire(50);
+
+    assertEquals(List.of(), sleeps);
+  }
+
+  @Test
+  public void debtIsSleptOffAtTheRate() {
+    var rateLimiter = limiter(50);
+    rateLimiter.acquire(50);
+
+    rateLimiter.acquire(10);
+
+    assertEquals(List.of(millis(200)), sleeps);
+  }
+
+  @Test
+  public void laterCallersQueueBehindTheDebt() {
+    var rateLimiter = limiter(50);
+    rateLimiter.acquire(60);
+
+    rateLimiter.acquire(1);
+
+    assertEquals(List.of(millis(200), millis(220)), sleeps);
+  }
+
+  @Test
+  public void elapsedTimeRefillsUpToOneSecond() {
+    var rateLimiter = limiter(50);
+    rateLimiter.acquire(50);
+    now += TimeUnit.SECONDS.toNanos(10);
+
+    rateLimiter.acquire(50);
+    rateLimiter.acquire(5);
+
+    assertEquals(List.of(millis(100)), sleeps);
+  }
+
+  @Test
+  public void rateBelowOnePerSecondStillAllowsOnePermit() {
+    var rateLimiter = limiter(0.5);
+
+    rateLimiter.acquire(1);
+    rateLimiter.acquire(1);
+
+    assertEquals(List.of(TimeUnit.SECONDS.toNanos(2)), sleeps);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsRateThatIsNotPositive() {
+    new RateLimiter(0);
+  }
+}